@@ -0,0 +1,65 @@
+package inventoryreader.ir;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SackLoreParser} against the split-based parsing it replaced, over the plain corpus
+ * lines both accept. Lines the old code threw on are left out, so the comparison is not
+ * dominated by exception cost. Run with {@code gradlew jmh}; the gc profiler it enables
+ * reports the allocation per pass next to the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SackLoreParserBenchmark {
+    private String[] lines;
+
+    @Setup
+    public void load() {
+        List<String> accepted = new ArrayList<>();
+        for (String line : SackLoreCorpus.lines()) {
+            String plain = SackLoreCorpus.strip(line);
+            try {
+                SackLoreCorpus.legacyStoredAmount(plain);
+                SackLoreCorpus.legacyGemstoneEntry(plain);
+                accepted.add(plain);
+            } catch (RuntimeException e) {
+                // Malformed for the old code; measured by the correctness test instead
+            }
+        }
+        lines = accepted.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void parser(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(SackLoreParser.storedAmount(line));
+            bh.consume(SackLoreParser.gemstoneEntry(line));
+        }
+    }
+
+    @Benchmark
+    public void legacySplit(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(SackLoreCorpus.legacyStoredAmount(line));
+            bh.consume(SackLoreCorpus.legacyGemstoneEntry(line));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package inventoryreader.ir;
+
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FormattedText;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single entry point for system chat messages, shared by every chat parser.
+ *
+ * Parsers register with the literal their messages start with. On the client thread the
+ * dispatcher reads just enough leading text of the component to compare against those
+ * prefixes, stopping as soon as it has them, so the vast majority of messages are
+ * rejected without flattening the component or running a regex. Matching messages go into
+ * a bounded lock-free queue drained by one serial background consumer, which hands each to its
+ * parser and tells every parser when a drain ends so they can apply batched results.
+ * Anything past the bound is dropped and counted rather than held in memory.
+ */
+public final class ChatIngestDispatcher {
+    private static final ChatIngestDispatcher INSTANCE = new ChatIngestDispatcher();
+    private static final int CAPACITY = 512;
+
+    /** Handles messages with a given prefix; called only from the ingest consumer, one call at a time. */
+    public interface Parser {
+        /** Parses one message; returns false if it turned out not to be one of this parser's. */
+        boolean parse(Component message);
+
+        /** Called once the queue has been drained, to apply whatever the batch collected. */
+        default void endBatch() {}
+    }
+
+    private static final class Registration {
+        final String prefix;
+        final String name;
+        final Parser parser;
+
+        Registration(String prefix, String name, Parser parser) {
+            this.prefix = prefix;
+            this.name = name;
+            this.parser = parser;
+        }
+    }
+
+    private static final class Pending {
+        final Component message;
+        final Registration target;
+
+        Pending(Component message, Registration target) {
+            this.message = message;
+            this.target = target;
+        }
+    }
+
+    private final List<Registration> parsers = new CopyOnWriteArrayList<>();
+    private volatile int longestPrefix = 0;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    // Parsers are not thread-safe, so drains must never overlap; batches end in file writes, hence I/O
+    private final Executor consumer = IrRuntime.getInstance().serialIo("chat.ingest");
+
+    private ChatIngestDispatcher() {
+        register("[Sacks]", "sacks", new SackMessageParser());
+    }
+
+    public static ChatIngestDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Routes messages whose text starts with {@code prefix} to {@code parser}. {@code name}
+     * labels its counters in {@code /ir stats}.
+     */
+    public synchronized void register(String prefix, String name, Parser parser) {
+        parsers.add(new Registration(prefix, name, parser));
+        longestPrefix = Math.max(longestPrefix, prefix.length());
+    }
+
+    /** Pre-filters a system chat message and queues it if some parser wants it. */
+    public void accept(Component message) {
+        if (message == null) return;
+        String head = leadingText(message, longestPrefix);
+        Registration target = null;
+        for (Registration r : parsers) {
+            if (head.startsWith(r.prefix)) {
+                target = r;
+                break;
+            }
+        }
+        if (target == null) {
+            IrMetrics.increment("chat.ingest.skipped");
+            return;
+        }
+        if (size.incrementAndGet() > CAPACITY) {
+            size.decrementAndGet();
+            IrMetrics.increment("chat." + target.name + ".dropped");
+            return;
+        }
+        queue.offer(new Pending(message, target));
+        IrMetrics.increment("chat." + target.name + ".enqueued");
+        if (drainScheduled.compareAndSet(false, true)) {
+            consumer.execute(this::drain);
+        }
+    }
+
+    /** The first {@code max} characters of the message's plain text, without flattening the rest. */
+    static String leadingText(Component message, int max) {
+        StringBuilder head = new StringBuilder(max);
+        message.visit(part -> {
+            head.append(part, 0, Math.min(part.length(), max - head.length()));
+            return head.length() >= max ? FormattedText.STOP_ITERATION : Optional.empty();
+        });
+        return head.toString();
+    }
+
+    private void drain() {
+        // Cleared first: anything offered from here on schedules another drain
+        drainScheduled.set(false);
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            size.decrementAndGet();
+            String name = pending.target.name;
+            try {
+                if (pending.target.parser.parse(pending.message)) {
+                    IrMetrics.increment("chat." + name + ".parsed");
+                }
+            } catch (RuntimeException e) {
+                IrMetrics.increment("chat." + name + ".parse_failed");
+                InventoryReader.LOGGER.warn("Failed to parse {} message: {}", name, e.toString());
+            }
+        }
+        for (Registration r : parsers) {
+            try {
+                r.parser.endBatch();
+            } catch (RuntimeException e) {
+                InventoryReader.LOGGER.error("Failed to apply {} batch", r.name, e);
+            }
+        }
+    }
+}
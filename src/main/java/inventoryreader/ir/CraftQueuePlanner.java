@@ -0,0 +1,153 @@
+package inventoryreader.ir;
+
+import inventoryreader.ir.recipes.RecipeGraph;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans a queue of (recipe, amount) targets jointly against one resource snapshot.
+ *
+ * Demand from every target is pushed down the recipe graph in a single pass over the
+ * topological order (products before ingredients), so an intermediate shared by several
+ * targets is netted against stock once instead of once per target. The result lists the
+ * combined raw materials still missing, the intermediates that have to be crafted, and
+ * per target whether anything it depends on is short.
+ */
+public final class CraftQueuePlanner {
+
+    private CraftQueuePlanner() {}
+
+    public static QueuePlan plan(List<QueueTarget> targets, Map<String, Integer> resources, RecipeGraph graph) {
+        int n = graph.size();
+        long[] demand = new long[n];
+        long[] targetDemand = new long[n];
+        List<QueueTarget> unknown = new ArrayList<>();
+
+        for (QueueTarget t : targets) {
+            if (t == null || t.amount <= 0) continue;
+            int id = graph.idOf(t.recipe);
+            if (id < 0 || !graph.isCraftable(id)) {
+                unknown.add(t);
+                continue;
+            }
+            demand[id] = RecipeGraph.saturatingAdd(demand[id], t.amount);
+            targetDemand[id] = RecipeGraph.saturatingAdd(targetDemand[id], t.amount);
+        }
+
+        long[] missing = new long[n];
+        long[] crafted = new long[n];
+        int[] topo = graph.topologicalOrder();
+        for (int k = topo.length - 1; k >= 0; k--) {
+            int id = topo[k];
+            long d = demand[id];
+            if (d <= 0) continue;
+            // Queued amounts of an item are always crafted fresh; only demand coming from
+            // other recipes may be covered by what is already in stock.
+            long coverable = d - targetDemand[id];
+            long have = Math.max(0, resources.getOrDefault(graph.nameOf(id), 0));
+            long fromStock = Math.min(coverable, have);
+            long shortfall = d - fromStock;
+            if (shortfall <= 0) continue;
+            if (!graph.isCraftable(id)) {
+                missing[id] = shortfall;
+                continue;
+            }
+            crafted[id] = shortfall;
+            int[] ing = graph.ingredientIds(id);
+            int[] qty = graph.ingredientQuantities(id);
+            for (int j = 0; j < ing.length; j++) {
+                demand[ing[j]] = RecipeGraph.saturatingAdd(demand[ing[j]], RecipeGraph.saturatingMultiply(shortfall, qty[j]));
+            }
+        }
+
+        Map<String, Long> missingByName = sortedByAmount(graph, missing);
+        Map<String, Long> craftedByName = sortedByAmount(graph, crafted);
+
+        // A target is blocked when a raw material it still needs came up short. The walk
+        // follows the netted requirement: it only descends into nodes that are actually
+        // crafted, so an intermediate covered from stock doesn't pull in its ingredients
+        List<TargetStatus> statuses = new ArrayList<>();
+        int[] mark = new int[n];
+        int[] stack = new int[n];
+        int epoch = 0;
+        for (QueueTarget t : targets) {
+            if (t == null || t.amount <= 0) continue;
+            if (unknown.contains(t)) {
+                statuses.add(new TargetStatus(t.recipe, t.amount, false, Collections.emptyMap()));
+                continue;
+            }
+            epoch++;
+            int root = graph.idOf(t.recipe);
+            Map<String, Long> blockedBy = new LinkedHashMap<>();
+            int sp = 0;
+            stack[sp++] = root;
+            mark[root] = epoch;
+            while (sp > 0) {
+                int id = stack[--sp];
+                if (missing[id] > 0) blockedBy.put(graph.nameOf(id), missing[id]);
+                if (crafted[id] <= 0) continue;
+                for (int ing : graph.ingredientIds(id)) {
+                    if (mark[ing] != epoch) {
+                        mark[ing] = epoch;
+                        stack[sp++] = ing;
+                    }
+                }
+            }
+            statuses.add(new TargetStatus(t.recipe, t.amount, blockedBy.isEmpty(), blockedBy));
+        }
+
+        return new QueuePlan(statuses, missingByName, craftedByName);
+    }
+
+    private static Map<String, Long> sortedByAmount(RecipeGraph graph, long[] amounts) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < amounts.length; id++) {
+            if (amounts[id] > 0) ids.add(id);
+        }
+        ids.sort((a, b) -> amounts[a] != amounts[b]
+            ? Long.compare(amounts[b], amounts[a])
+            : graph.nameOf(a).compareToIgnoreCase(graph.nameOf(b)));
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (int id : ids) out.put(graph.nameOf(id), amounts[id]);
+        return out;
+    }
+
+    public static class QueueTarget {
+        public String recipe;
+        public int amount;
+
+        public QueueTarget(String recipe, int amount) {
+            this.recipe = recipe;
+            this.amount = amount;
+        }
+    }
+
+    public static class TargetStatus {
+        public final String recipe;
+        public final int amount;
+        public final boolean ready;
+        public final Map<String, Long> blockedBy;
+
+        public TargetStatus(String recipe, int amount, boolean ready, Map<String, Long> blockedBy) {
+            this.recipe = recipe;
+            this.amount = amount;
+            this.ready = ready;
+            this.blockedBy = blockedBy;
+        }
+    }
+
+    public static class QueuePlan {
+        public final List<TargetStatus> targets;
+        public final Map<String, Long> missing;
+        public final Map<String, Long> toCraft;
+
+        public QueuePlan(List<TargetStatus> targets, Map<String, Long> missing, Map<String, Long> toCraft) {
+            this.targets = targets;
+            this.missing = missing;
+            this.toCraft = toCraft;
+        }
+    }
+}
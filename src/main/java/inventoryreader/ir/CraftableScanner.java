@@ -0,0 +1,248 @@
+package inventoryreader.ir;
+
+import inventoryreader.ir.recipes.RecipeGraph;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes, for every loaded recipe, how many units can be crafted right now from the
+ * current resources, intermediates in stock included.
+ *
+ * All recipes are evaluated against a single resource snapshot. Per recipe the amount is
+ * found by exponential + binary search over a netting check on that recipe's sub-graph,
+ * and recipes are spread over the fork-join pool. Results are cached until the resource
+ * version or the recipe graph changes.
+ */
+public class CraftableScanner {
+    private static final CraftableScanner INSTANCE = new CraftableScanner();
+
+    private volatile ScanResult latest = null;
+    private volatile CompletableFuture<ScanResult> inFlight = null;
+
+    private CraftableScanner() {}
+
+    public static CraftableScanner getInstance() {
+        return INSTANCE;
+    }
+
+    /** Latest result if it still matches the current resources and recipes, otherwise null. */
+    public ScanResult getIfFresh() {
+        ScanResult r = latest;
+        if (r == null) return null;
+        if (r.version != ResourcesManager.getInstance().getVersion()) return null;
+        if (r.graph != RecipeManager.getInstance().getRecipeGraph()) return null;
+        return r;
+    }
+
+    /** Most recent result, possibly stale; null before the first scan completes. */
+    public ScanResult getLatest() {
+        return latest;
+    }
+
+    public boolean isScanning() {
+        CompletableFuture<ScanResult> f = inFlight;
+        return f != null && !f.isDone();
+    }
+
+    /** Starts a background scan unless a fresh result exists or one is already running. */
+    public synchronized CompletableFuture<ScanResult> requestScan() {
+        ScanResult fresh = getIfFresh();
+        if (fresh != null) return CompletableFuture.completedFuture(fresh);
+        if (isScanning()) return inFlight;
+        inFlight = IrRuntime.getInstance().supplyCpu("craftable_scan", this::scanNow)
+            .whenComplete((r, t) -> {
+                if (t != null) InventoryReader.LOGGER.error("Craftable scan failed", t);
+            });
+        return inFlight;
+    }
+
+    /** Runs a full scan on the calling thread (recipes still fan out over the CPU pool). */
+    public ScanResult scanNow() {
+        ResourcesManager rm = ResourcesManager.getInstance();
+        // Read the version first: a change racing with the snapshot only makes the result look stale.
+        long version = rm.getVersion();
+        RecipeGraph graph = RecipeManager.getInstance().getRecipeGraph();
+        Map<String, Integer> resources = rm.getSnapshot();
+
+        int n = graph.size();
+        long[] have = new long[n];
+        for (int id = 0; id < n; id++) {
+            Integer amt = resources.get(graph.nameOf(id));
+            have[id] = amt == null ? 0 : Math.max(0, amt);
+        }
+
+        int[] targets = new int[n];
+        int count = 0;
+        for (int id = 0; id < n; id++) {
+            if (graph.isCraftable(id)) targets[count++] = id;
+        }
+        int[] max = new int[count];
+        if (count > 0) {
+            ForkJoinPool pool = IrRuntime.getInstance().cpu();
+            int threshold = Math.max(8, count / (pool.getParallelism() * 4 + 1));
+            pool.invoke(new ScanTask(graph, have, targets, max, 0, count, threshold));
+        }
+
+        List<CraftableEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (max[i] > 0) entries.add(new CraftableEntry(graph.nameOf(targets[i]), max[i]));
+        }
+        ScanResult result = new ScanResult(version, graph, Collections.unmodifiableList(entries));
+        latest = result;
+        return result;
+    }
+
+    private static final class ScanTask extends RecursiveAction {
+        private final RecipeGraph graph;
+        private final long[] have;
+        private final int[] targets;
+        private final int[] out;
+        private final int from, to, threshold;
+
+        ScanTask(RecipeGraph graph, long[] have, int[] targets, int[] out, int from, int to, int threshold) {
+            this.graph = graph;
+            this.have = have;
+            this.targets = targets;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScanTask(graph, have, targets, out, from, mid, threshold),
+                          new ScanTask(graph, have, targets, out, mid, to, threshold));
+                return;
+            }
+            Netting netting = new Netting(graph, have);
+            for (int i = from; i < to; i++) {
+                out[i] = netting.maxCraftable(targets[i]);
+            }
+        }
+    }
+
+    /** Per-worker scratch state for netting checks; not thread-safe. */
+    private static final class Netting {
+        private final RecipeGraph graph;
+        private final long[] have;
+        private final long[] demand;
+        private final int[] mark;
+        private final int[] order;
+        private final int[] stack;
+        private final int[] cursor;
+        private int epoch = 0;
+        private int orderLen = 0;
+
+        Netting(RecipeGraph graph, long[] have) {
+            int n = graph.size();
+            this.graph = graph;
+            this.have = have;
+            this.demand = new long[n];
+            this.mark = new int[n];
+            this.order = new int[n];
+            this.stack = new int[n];
+            this.cursor = new int[n];
+        }
+
+        int maxCraftable(int target) {
+            collectSubgraph(target);
+            if (!feasible(target, 1)) return 0;
+            long lo = 1;
+            long hi = 2;
+            while (hi <= Integer.MAX_VALUE && feasible(target, hi)) {
+                lo = hi;
+                hi <<= 1;
+            }
+            if (hi > Integer.MAX_VALUE) {
+                if (feasible(target, Integer.MAX_VALUE)) return Integer.MAX_VALUE;
+                hi = Integer.MAX_VALUE;
+            }
+            // Invariant: lo feasible, hi infeasible
+            while (hi - lo > 1) {
+                long mid = (lo + hi) >>> 1;
+                if (feasible(target, mid)) lo = mid; else hi = mid;
+            }
+            return (int) lo;
+        }
+
+        // Post-order DFS from the target: ingredients land before the items that use them,
+        // and the target itself ends up last.
+        private void collectSubgraph(int target) {
+            epoch++;
+            orderLen = 0;
+            int depth = 0;
+            stack[0] = target;
+            cursor[0] = 0;
+            mark[target] = epoch;
+            while (depth >= 0) {
+                int node = stack[depth];
+                int[] ing = graph.ingredientIds(node);
+                if (cursor[depth] < ing.length) {
+                    int next = ing[cursor[depth]++];
+                    if (mark[next] != epoch) {
+                        mark[next] = epoch;
+                        depth++;
+                        stack[depth] = next;
+                        cursor[depth] = 0;
+                    }
+                } else {
+                    order[orderLen++] = node;
+                    depth--;
+                }
+            }
+        }
+
+        // Nets demand top-down (products before ingredients). Stock of the target itself is
+        // not counted, since the question is how many more can be made.
+        private boolean feasible(int target, long amount) {
+            for (int k = 0; k < orderLen; k++) demand[order[k]] = 0L;
+            demand[target] = amount;
+            for (int k = orderLen - 1; k >= 0; k--) {
+                int node = order[k];
+                long d = demand[node];
+                if (d <= 0) continue;
+                if (node != target) {
+                    if (have[node] >= d) continue;
+                    d -= have[node];
+                }
+                int[] ing = graph.ingredientIds(node);
+                if (ing.length == 0) return false;
+                int[] qty = graph.ingredientQuantities(node);
+                for (int j = 0; j < ing.length; j++) {
+                    demand[ing[j]] = RecipeGraph.saturatingAdd(demand[ing[j]], RecipeGraph.saturatingMultiply(d, qty[j]));
+                }
+            }
+            return true;
+        }
+    }
+
+    public static class ScanResult {
+        public final long version;
+        public final RecipeGraph graph;
+        public final List<CraftableEntry> entries;
+
+        public ScanResult(long version, RecipeGraph graph, List<CraftableEntry> entries) {
+            this.version = version;
+            this.graph = graph;
+            this.entries = entries;
+        }
+    }
+
+    public static class CraftableEntry {
+        public final String name;
+        public final int maxCraftable;
+
+        public CraftableEntry(String name, int maxCraftable) {
+            this.name = name;
+            this.maxCraftable = maxCraftable;
+        }
+    }
+}
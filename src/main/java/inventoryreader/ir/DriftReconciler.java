@@ -0,0 +1,229 @@
+package inventoryreader.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically checks the per-source resource counts against the snapshots they should
+ * match, to catch drift from missed or double-counted events.
+ *
+ * The references are allcontainerData.json for each container, inventorydata.json for the
+ * inventory and, for sacks, the settled items of this session's sack snapshots. Sources the
+ * ledger has never attributed anything to, and sacks it was never seeded from, are skipped:
+ * whatever they held before per-source tracking began is untracked, not drift. A pass
+ * reads the references and the stored totals on an I/O thread, compares a few sources per
+ * slice on the CPU pool, yielding between slices, and applies any corrections back on an
+ * I/O thread, so it never holds the resource lock for longer than one write. Drift is always counted and logged; it is
+ * only corrected when asked to, and never for a source that changed while the pass was
+ * running.
+ */
+public final class DriftReconciler {
+    private static final DriftReconciler INSTANCE = new DriftReconciler();
+    private static final long FIRST_PASS_DELAY_MS = 60_000;
+    private static final long PASS_INTERVAL_MS = 5 * 60_000;
+    private static final long SLICE_DELAY_MS = 50;
+    private static final int SOURCES_PER_SLICE = 4;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean autoCorrect = false;
+    private volatile Report lastReport = null;
+
+    private DriftReconciler() {}
+
+    public static DriftReconciler getInstance() {
+        return INSTANCE;
+    }
+
+    /** Schedules the periodic passes; later calls do nothing. */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            IrRuntime.getInstance().scheduleWithFixedDelay("reconcile.request", () -> requestPass(autoCorrect),
+                FIRST_PASS_DELAY_MS, PASS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isAutoCorrect() {
+        return autoCorrect;
+    }
+
+    /** Whether periodic passes fix the drift they find, not just report it. */
+    public void setAutoCorrect(boolean autoCorrect) {
+        this.autoCorrect = autoCorrect;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /** Result of the last finished pass, or null before the first one. */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /** Starts a pass now; returns false if one is already running. */
+    public boolean requestPass(boolean correct) {
+        if (!running.compareAndSet(false, true)) return false;
+        try {
+            IrRuntime.getInstance().runIo("reconcile.begin", () -> begin(correct));
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    private void begin(boolean correct) {
+        try {
+            if (!FilePathManager.areResourceNamesSeeded()) {
+                running.set(false);
+                return;
+            }
+            ResourcesManager resources = ResourcesManager.getInstance();
+            // Taken before the snapshots are read: a source written after this is left alone
+            Pass pass = new Pass(correct, resources.getSourceStamps(), resources.getSnapshot());
+            for (Map.Entry<String, Map<String, Integer>> e : resources.readSourceFile(StorageReader.DATA_FILE).entrySet()) {
+                pass.add(new Task(e.getKey(), e.getValue(), true));
+            }
+            Map<String, Integer> inventory = resources.readSourceFile(InventoryReaderClient.DATA_FILE).get(InventoryReaderClient.INVENTORY_TITLE);
+            if (inventory != null) {
+                pass.add(new Task(ResourcesManager.SOURCE_INVENTORY, inventory, true));
+            }
+            Map<String, Integer> sacks = SackRegistry.getInstance().settledCounts();
+            if (!sacks.isEmpty()) {
+                pass.add(new Task(ResourcesManager.SOURCE_SACKS, sacks, false));
+            }
+            slice(pass);
+        } catch (RuntimeException e) {
+            running.set(false);
+            InventoryReader.LOGGER.error("Drift reconciliation failed to start", e);
+        }
+    }
+
+    private void slice(Pass pass) {
+        try {
+            long start = System.nanoTime();
+            int end = Math.min(pass.next + SOURCES_PER_SLICE, pass.tasks.size());
+            for (; pass.next < end; pass.next++) {
+                check(pass, pass.tasks.get(pass.next));
+            }
+            IrMetrics.recordNanos("reconcile.slice", System.nanoTime() - start);
+            if (pass.next < pass.tasks.size()) {
+                IrRuntime runtime = IrRuntime.getInstance();
+                runtime.schedule("reconcile.slice", () -> slice(pass), SLICE_DELAY_MS, TimeUnit.MILLISECONDS, runtime.cpu());
+            } else {
+                // Corrections rewrite the resource files, so they are applied on an I/O thread
+                IrRuntime.getInstance().runIo("reconcile.finish", () -> finish(pass));
+            }
+        } catch (RuntimeException e) {
+            running.set(false);
+            InventoryReader.LOGGER.error("Drift reconciliation failed", e);
+        }
+    }
+
+    private void check(Pass pass, Task task) {
+        ResourcesManager resources = ResourcesManager.getInstance();
+        Map<String, Integer> expected = resources.resolveNames(pass.totals, task.snapshot);
+        Map<String, Integer> actual = resources.getSourceContents(task.source);
+        Map<String, Integer> drift = new LinkedHashMap<>();
+        Set<String> items = new HashSet<>(expected.keySet());
+        // Sack references only cover some items, so only those are compared
+        if (task.whole) items.addAll(actual.keySet());
+        for (String item : items) {
+            int delta = expected.getOrDefault(item, 0) - actual.getOrDefault(item, 0);
+            if (delta != 0) drift.put(item, delta);
+        }
+        IrMetrics.increment("reconcile.sources.checked");
+        if (drift.isEmpty()) return;
+        pass.drift.put(task.source, drift);
+        for (int delta : drift.values()) {
+            pass.driftItems++;
+            pass.driftTotal += Math.abs(delta);
+        }
+    }
+
+    private void finish(Pass pass) {
+        List<String> corrected = Collections.emptyList();
+        if (pass.correct && !pass.drift.isEmpty()) {
+            try {
+                corrected = ResourcesManager.getInstance().applyCorrections(pass.drift, pass.stamps);
+            } catch (RuntimeException e) {
+                InventoryReader.LOGGER.error("Failed to apply drift corrections", e);
+            }
+        }
+        lastReport = new Report(pass.tasks.size(), new LinkedHashMap<>(pass.drift), pass.driftItems, pass.driftTotal, corrected);
+        IrMetrics.increment("reconcile.passes");
+        IrMetrics.add("reconcile.drift.items", pass.driftItems);
+        IrMetrics.add("reconcile.corrected.sources", corrected.size());
+        if (!pass.drift.isEmpty()) {
+            InventoryReader.LOGGER.warn("Resource drift in {} of {} sources ({} items, {} total); corrected {}",
+                pass.drift.size(), pass.tasks.size(), pass.driftItems, pass.driftTotal, corrected.size());
+        }
+        running.set(false);
+    }
+
+    private static final class Task {
+        final String source;
+        final Map<String, Integer> snapshot;
+        final boolean whole;
+
+        Task(String source, Map<String, Integer> snapshot, boolean whole) {
+            this.source = source;
+            this.snapshot = snapshot;
+            this.whole = whole;
+        }
+    }
+
+    private static final class Pass {
+        final boolean correct;
+        final Map<String, Long> stamps;
+        // Stored totals as of the start of the pass, for resolving snapshot item names
+        final Map<String, Integer> totals;
+        final List<Task> tasks = new ArrayList<>();
+        final Map<String, Map<String, Integer>> drift = new LinkedHashMap<>();
+        int next = 0;
+        int driftItems = 0;
+        long driftTotal = 0;
+
+        Pass(boolean correct, Map<String, Long> stamps, Map<String, Integer> totals) {
+            this.correct = correct;
+            this.stamps = stamps;
+            this.totals = totals;
+        }
+
+        /** Queues {@code task} unless the ledger has never attributed anything to its source. */
+        void add(Task task) {
+            if (stamps.containsKey(task.source)) {
+                tasks.add(task);
+            } else {
+                IrMetrics.increment("reconcile.sources.untracked");
+            }
+        }
+    }
+
+    public static class Report {
+        public final long finishedAtMillis = System.currentTimeMillis();
+        public final int sourcesChecked;
+        /** Source -> resource -> (reference count - tracked count). */
+        public final Map<String, Map<String, Integer>> drift;
+        public final int driftItems;
+        public final long driftTotal;
+        public final List<String> corrected;
+
+        public Report(int sourcesChecked, Map<String, Map<String, Integer>> drift, int driftItems, long driftTotal, List<String> corrected) {
+            this.sourcesChecked = sourcesChecked;
+            this.drift = drift;
+            this.driftItems = driftItems;
+            this.driftTotal = driftTotal;
+            this.corrected = corrected;
+        }
+    }
+}
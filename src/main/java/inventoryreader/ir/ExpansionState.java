@@ -0,0 +1,173 @@
+package inventoryreader.ir;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable record of which recipe-tree nodes the user has opened or closed.
+ *
+ * Nodes are identified by a 64-bit path ID: a hash of the item names from the root down to
+ * the node, built one step at a time with {@link #child} from a 64-bit hash of each name. Tree walks carry the parent's ID
+ * as a long, so rendering and hit-testing never build key strings, and the IDs stay stable
+ * across restarts and recipe reloads. IDs are kept sorted for binary search with a
+ * parallel bitset marking the expanded ones. Collapsed entries are kept too, so nested
+ * state survives collapsing and re-opening a parent.
+ */
+public final class ExpansionState {
+    /** Parent ID of a top-level path. */
+    public static final long ROOT = 0L;
+    public static final ExpansionState EMPTY = new ExpansionState(new long[0], new long[0]);
+
+    private final long[] ids;
+    private final long[] expanded;
+
+    private ExpansionState(long[] ids, long[] expanded) {
+        this.ids = ids;
+        this.expanded = expanded;
+    }
+
+    /** Path ID of the child {@code name} under {@code parent}. */
+    public static long child(long parent, String name) {
+        long h = parent * 0x9E3779B97F4A7C15L + hashName(name);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE53E4CB9L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // FNV-1a over the chars; String.hashCode's 32 bits would let colliding names share every path below them
+    private static long hashName(String name) {
+        if (name == null) return 0;
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /** Path ID of a legacy {@code "A>B>C"} string key. */
+    public static long fromPathKey(String key) {
+        long id = ROOT;
+        int start = 0;
+        while (true) {
+            int sep = key.indexOf('>', start);
+            id = child(id, sep < 0 ? key.substring(start) : key.substring(start, sep));
+            if (sep < 0) return id;
+            start = sep + 1;
+        }
+    }
+
+    /**
+     * Rebuilds a state saved as {@link #ids()} and {@link #expandedBits()}. Input that is not
+     * in that shape (unsorted, duplicated, short bitset) is re-inserted entry by entry.
+     */
+    public static ExpansionState restore(long[] ids, long[] expandedBits) {
+        if (ids == null || ids.length == 0) return EMPTY;
+        long[] bits = expandedBits == null ? new long[0] : expandedBits;
+        boolean wellFormed = bits.length == (ids.length + 63) >>> 6;
+        for (int i = 1; wellFormed && i < ids.length; i++) {
+            wellFormed = ids[i - 1] < ids[i];
+        }
+        if (wellFormed) return new ExpansionState(ids.clone(), bits.clone());
+        ExpansionState state = EMPTY;
+        for (int i = 0; i < ids.length; i++) {
+            state = state.with(ids[i], (i >>> 6) < bits.length && bit(bits, i));
+        }
+        return state;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** True if the node was ever opened or closed, as opposed to never touched. */
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public boolean isExpanded(long id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i >= 0 && bit(expanded, i);
+    }
+
+    public ExpansionState with(long id, boolean open) {
+        int i = Arrays.binarySearch(ids, id);
+        if (i >= 0) {
+            if (bit(expanded, i) == open) return this;
+            long[] bits = expanded.clone();
+            bits[i >>> 6] ^= 1L << i;
+            return new ExpansionState(ids, bits);
+        }
+        int at = -i - 1;
+        long[] nextIds = new long[ids.length + 1];
+        System.arraycopy(ids, 0, nextIds, 0, at);
+        nextIds[at] = id;
+        System.arraycopy(ids, at, nextIds, at + 1, ids.length - at);
+        long[] bits = new long[(nextIds.length + 63) >>> 6];
+        for (int k = 0, src = 0; k < nextIds.length; k++) {
+            boolean set = k == at ? open : bit(expanded, src++);
+            if (set) bits[k >>> 6] |= 1L << k;
+        }
+        return new ExpansionState(nextIds, bits);
+    }
+
+    public ExpansionState toggled(long id) {
+        return with(id, !isExpanded(id));
+    }
+
+    /** IDs of every node with an entry, expanded or collapsed, sorted. */
+    public long[] ids() {
+        return ids.clone();
+    }
+
+    /** Bitset parallel to {@link #ids()}: bit {@code i} is set if {@code ids()[i]} is expanded. */
+    public long[] expandedBits() {
+        return expanded.clone();
+    }
+
+    /**
+     * Drops entries that no longer name a node of any recipe tree. Starting from each
+     * recipe's root, the walk only descends through nodes that have an entry, so its cost
+     * follows the size of this state rather than the size of the trees.
+     */
+    public ExpansionState retainReachable(Map<String, Map<String, Integer>> recipes, ToLongFunction<String> rootParent) {
+        if (ids.length == 0 || recipes == null || recipes.isEmpty()) return this;
+        boolean[] reached = new boolean[ids.length];
+        int count = 0;
+        for (String recipe : recipes.keySet()) {
+            count += visit(recipe, child(rootParent.applyAsLong(recipe), recipe), recipes, reached);
+        }
+        if (count == ids.length) return this;
+        long[] nextIds = new long[count];
+        long[] bits = new long[(count + 63) >>> 6];
+        for (int i = 0, k = 0; i < ids.length; i++) {
+            if (!reached[i]) continue;
+            nextIds[k] = ids[i];
+            if (bit(expanded, i)) bits[k >>> 6] |= 1L << k;
+            k++;
+        }
+        return new ExpansionState(nextIds, bits);
+    }
+
+    private int visit(String name, long id, Map<String, Map<String, Integer>> recipes, boolean[] reached) {
+        int i = Arrays.binarySearch(ids, id);
+        if (i < 0 || reached[i]) return 0;
+        reached[i] = true;
+        int count = 1;
+        Map<String, Integer> recipe = recipes.get(name);
+        if (recipe != null) {
+            for (String ingredient : recipe.keySet()) {
+                count += visit(ingredient, child(id, ingredient), recipes, reached);
+            }
+        }
+        return count;
+    }
+
+    private static boolean bit(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+}
@@ -42,6 +42,12 @@ public class FilePathManager {
     public static final File REMOTE_RECIPES_JSON = new File(FilePathManager.DATA_DIR, "recipes_remote.json");
     public static final File REMOTE_FORGE_JSON = new File(FilePathManager.DATA_DIR, "recipes_remote_forge.json");
     public static final File REMOTE_SOURCES_JSON = new File(FilePathManager.DATA_DIR, "remote_sources.json");
+    /** Per-source breakdown of resources.json, kept by ResourcesManager. */
+    public static final File RESOURCE_SOURCES_JSON = new File(FilePathManager.DATA_DIR, "resource_sources.json");
+    /** Content hash of each container in allcontainerData.json, kept by StorageReader. */
+    public static final File CONTAINER_HASHES_JSON = new File(FilePathManager.DATA_DIR, "container_hashes.json");
+    /** Content hash and contents of each sack as last read, kept by SackRegistry. */
+    public static final File SACK_SNAPSHOTS_JSON = new File(FilePathManager.DATA_DIR, "sack_snapshots.json");
     public static final File REMOTE_META_JSON = new File(FilePathManager.DATA_DIR, "remote_sources_meta.json");
     /** Extracted NEU-REPO ZIP contents — read by NEURepository via the neurepoparser library. */
     public static final File NEU_REPO_EXTRACTED = new File(FilePathManager.DATA_DIR, "neu-repo-extracted");
@@ -89,10 +95,13 @@ public class FilePathManager {
 
     private static void reinitializeFiles() {
         RESOURCES_SEEDED = false;
-        for (File f : new File[]{file_generic, file_inventory, file_resources, file_widget_config, SACK_NAMES_FILE, MERGED_RECIPES_JSON}) {
+        for (File f : new File[]{file_generic, file_inventory, file_resources, file_widget_config, SACK_NAMES_FILE, SACK_SNAPSHOTS_JSON, CONTAINER_HASHES_JSON, MERGED_RECIPES_JSON, RESOURCE_SOURCES_JSON}) {
             if (f.exists()) f.delete();
         }
         initializeFiles();
+        SackRegistry.getInstance().reset();
+        ResourcesManager.getInstance().clearSources();
+        ResourcesManager.getInstance().markChanged();
     }
 
     public static boolean areResourceNamesSeeded() { return RESOURCES_SEEDED; }
@@ -106,7 +115,7 @@ public class FilePathManager {
         ensureResourceNames(names);
         RESOURCES_SEEDED = true;
         try {
-            inventoryreader.ir.ResourcesManager.getInstance().flushPendingIfReady();
+            ResourcesManager.getInstance().flushPendingIfReady();
         } catch (Throwable ignored) {}
     }
 
@@ -426,7 +435,8 @@ public class FilePathManager {
             widgetConfig.put("selectedRecipe", null);
             widgetConfig.put("widgetX", 10);
             widgetConfig.put("widgetY", 40);
-            widgetConfig.put("expandedNodes", new HashMap<String, Boolean>());
+            widgetConfig.put("expansionIds", new long[0]);
+            widgetConfig.put("expansionOpen", new long[0]);
             widgetConfig.put("craftAmount", 1);
             
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
@@ -508,6 +518,7 @@ public class FilePathManager {
                 try (FileWriter writer = new FileWriter(file_resources)) {
                     new GsonBuilder().setPrettyPrinting().create().toJson(resources, writer);
                 }
+                ResourcesManager.getInstance().markChanged();
             }
         } catch (Exception ignored) {}
     }
@@ -0,0 +1,123 @@
+package inventoryreader.ir;
+
+import java.util.Arrays;
+
+/**
+ * Clickable rectangles recorded while a screen or HUD is laid out, resolved by binary
+ * search on y.
+ *
+ * An entry carries a caller-defined kind plus a long and an object argument instead of a
+ * callback, so refilling the index every frame allocates nothing once the arrays have
+ * grown; {@link #clear()} only resets the count. On the first lookup after a change the
+ * entries are ordered by top edge (they mostly arrive in that order already) and a running
+ * maximum of bottom edges is computed, which bounds the backwards scan from the binary
+ * search hit. Overlapping entries resolve to the one added first.
+ */
+final class HitIndex {
+    private int[] xs = new int[32];
+    private int[] ys = new int[32];
+    private int[] ws = new int[32];
+    private int[] hs = new int[32];
+    private int[] kinds = new int[32];
+    private long[] args = new long[32];
+    private Object[] refs = new Object[32];
+    private int size;
+
+    private int[] byTop = new int[32];
+    private int[] maxBottom = new int[32];
+    private boolean sorted = true;
+
+    void clear() {
+        Arrays.fill(refs, 0, size, null);
+        size = 0;
+        sorted = true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(int x, int y, int width, int height, int kind, long arg, Object ref) {
+        if (size == xs.length) grow();
+        xs[size] = x;
+        ys[size] = y;
+        ws[size] = width;
+        hs[size] = height;
+        kinds[size] = kind;
+        args[size] = arg;
+        refs[size] = ref;
+        size++;
+        sorted = false;
+    }
+
+    /** Slot of the entry containing the point, or -1. */
+    int find(double mouseX, double mouseY) {
+        if (size == 0) return -1;
+        if (!sorted) sort();
+        // Last entry whose top is at or above the point
+        int lo = 0, hi = size - 1, last = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ys[byTop[mid]] <= mouseY) {
+                last = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int best = -1;
+        for (int i = last; i >= 0 && maxBottom[i] > mouseY; i--) {
+            int slot = byTop[i];
+            if ((best < 0 || slot < best) && mouseY < ys[slot] + hs[slot]
+                    && mouseX >= xs[slot] && mouseX < xs[slot] + ws[slot]) {
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    int kind(int slot) {
+        return kinds[slot];
+    }
+
+    long arg(int slot) {
+        return args[slot];
+    }
+
+    Object ref(int slot) {
+        return refs[slot];
+    }
+
+    private void sort() {
+        for (int i = 0; i < size; i++) {
+            // Insertion sort: rows are recorded top to bottom, so this is close to linear
+            int slot = i;
+            int j = i;
+            while (j > 0 && ys[byTop[j - 1]] > ys[slot]) {
+                byTop[j] = byTop[j - 1];
+                j--;
+            }
+            byTop[j] = slot;
+        }
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            int slot = byTop[i];
+            max = Math.max(max, ys[slot] + hs[slot]);
+            maxBottom[i] = max;
+        }
+        sorted = true;
+    }
+
+    private void grow() {
+        int n = xs.length * 2;
+        xs = Arrays.copyOf(xs, n);
+        ys = Arrays.copyOf(ys, n);
+        ws = Arrays.copyOf(ws, n);
+        hs = Arrays.copyOf(hs, n);
+        kinds = Arrays.copyOf(kinds, n);
+        args = Arrays.copyOf(args, n);
+        refs = Arrays.copyOf(refs, n);
+        byTop = Arrays.copyOf(byTop, n);
+        maxBottom = Arrays.copyOf(maxBottom, n);
+    }
+}
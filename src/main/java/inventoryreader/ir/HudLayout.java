@@ -0,0 +1,430 @@
+package inventoryreader.ir;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.Style;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed draw commands for the sandbox HUD (recipe tree panel plus craft queue panel).
+ *
+ * Building a layout does all the measuring, wrapping, sorting and scale math once; drawing it
+ * is a walk over a flat command array. SandboxWidget rebuilds the layout only when the plan,
+ * expansion state, widget geometry or GUI-scaled screen size changes.
+ */
+final class HudLayout {
+    static final int DARK_PANEL_BG = 0x99271910;
+    static final int HEADER_BG = 0xCC2C4A1B;
+    static final int GOLD = 0xFFFFB728;
+    static final int RECIPE_LEVEL_INDENT = 10;
+    static final int QUEUE_MAX_MISSING_LINES = 8;
+    private static final String CRAFTABLE_HEADER = "Craftable -";
+
+    private static final int FILL = 0;
+    private static final int TEXT = 1;
+
+    /** Hit kind of a recipe tree row; the arg is its path ID and the ref its node. */
+    static final int HIT_NODE = 0;
+
+    /** Everything the layout depends on, captured once per rebuild. */
+    static class Inputs {
+        int generation;
+        int screenWidth;
+        int screenHeight;
+        int widgetX;
+        int widgetY;
+        int widgetWidth;
+        int widgetHeight;
+        boolean repositioning;
+        String selectedRecipe;
+        RecipeManager.RecipeNode recipeTree;
+        ExpansionState expansion;
+        List<String> messages;
+        CraftQueuePlanner.QueuePlan queuePlan;
+    }
+
+    private static final class Cmd {
+        int kind;
+        int x1, y1, x2, y2;
+        int color;
+        boolean hover;
+        Component component;
+        String string;
+        float tx, ty, scale;
+        boolean transformed;
+        int lx;
+        boolean shadow;
+    }
+
+    final int generation;
+    final int screenWidth;
+    final int screenHeight;
+    final int nodeLineHeight;
+    final float treeScale;
+    /** Tree rows as laid out, for click handling. */
+    final HitIndex hits;
+    private final Cmd[] cmds;
+
+    private HudLayout(Inputs in, int nodeLineHeight, float treeScale, HitIndex hits, List<Cmd> cmds) {
+        this.generation = in.generation;
+        this.screenWidth = in.screenWidth;
+        this.screenHeight = in.screenHeight;
+        this.nodeLineHeight = nodeLineHeight;
+        this.treeScale = treeScale;
+        this.hits = hits;
+        this.cmds = cmds.toArray(new Cmd[0]);
+    }
+
+    int commandCount() {
+        return cmds.length;
+    }
+
+    void draw(GuiGraphics context, Font font, int mouseX, int mouseY) {
+        for (Cmd c : cmds) {
+            if (c.kind == FILL) {
+                int color = c.color;
+                if (c.hover && mouseX >= c.x1 && mouseX <= c.x2 && mouseY >= c.y1 && mouseY <= c.y2) {
+                    color += 0x22FFFFFF;
+                }
+                context.fill(c.x1, c.y1, c.x2, c.y2, color);
+            } else if (!c.transformed) {
+                if (c.component != null) context.drawString(font, c.component, c.x1, c.y1, c.color, c.shadow);
+                else context.drawString(font, c.string, c.x1, c.y1, c.color, c.shadow);
+            } else {
+                context.pose().pushMatrix();
+                context.pose().translate(c.tx, c.ty);
+                context.pose().scale(c.scale, c.scale);
+                if (c.component != null) context.drawString(font, c.component, c.lx, 0, c.color, c.shadow);
+                else context.drawString(font, c.string, c.lx, 0, c.color, c.shadow);
+                context.pose().popMatrix();
+            }
+        }
+    }
+
+    static HudLayout build(Inputs in, Font font) {
+        Builder b = new Builder(in, font);
+        int queueY = in.widgetY;
+        if (in.selectedRecipe != null && in.recipeTree != null) {
+            queueY = b.recipePanel() + 6;
+        }
+        if (in.queuePlan != null && !in.queuePlan.targets.isEmpty()) {
+            b.queuePanel(in.widgetX, queueY);
+        }
+        return new HudLayout(in, b.nodeLineHeight, b.treeScale, b.hits, b.out);
+    }
+
+    private static final class Builder {
+        private final Inputs in;
+        private final Font font;
+        private final List<Cmd> out = new ArrayList<>();
+        private final HitIndex hits = new HitIndex();
+        private int nodeLineHeight = 16;
+        private float treeScale = 1.0f;
+
+        Builder(Inputs in, Font font) {
+            this.in = in;
+            this.font = font;
+        }
+
+        private Cmd fill(int x1, int y1, int x2, int y2, int color) {
+            Cmd c = new Cmd();
+            c.kind = FILL;
+            c.x1 = x1;
+            c.y1 = y1;
+            c.x2 = x2;
+            c.y2 = y2;
+            c.color = color;
+            out.add(c);
+            return c;
+        }
+
+        private void border(int x, int y, int width, int height, int color) {
+            fill(x, y, x + width, y + 1, color);
+            fill(x, y + height - 1, x + width, y + height, color);
+            fill(x, y, x + 1, y + height, color);
+            fill(x + width - 1, y, x + width, y + height, color);
+        }
+
+        private void text(Component component, String string, int x, int y, int color, boolean shadow) {
+            Cmd c = new Cmd();
+            c.kind = TEXT;
+            c.component = component;
+            c.string = string;
+            c.x1 = x;
+            c.y1 = y;
+            c.color = color;
+            c.shadow = shadow;
+            out.add(c);
+        }
+
+        private void scaledText(Component component, String string, float tx, float ty, float scale, int lx, int color) {
+            Cmd c = new Cmd();
+            c.kind = TEXT;
+            c.component = component;
+            c.string = string;
+            c.transformed = true;
+            c.tx = tx;
+            c.ty = ty;
+            c.scale = scale;
+            c.lx = lx;
+            c.color = color;
+            out.add(c);
+        }
+
+        /** Lays out the recipe panel and returns its bottom y. */
+        int recipePanel() {
+            int height = in.screenHeight;
+            int panelWidth = in.widgetWidth;
+            int visibleLines = countVisibleLines(in.recipeTree, SandboxWidget.rootPath(in.selectedRecipe));
+            int panelMaxHeight = Math.min(height - 40, in.widgetHeight);
+
+            int recipeTreeHeightMax = Math.max(0, visibleLines * 16);
+            int messageLinesRaw = countMessageLines(panelWidth);
+            int availableForMessagesMax = Math.max(0, Math.min((int)(height * 0.4), panelMaxHeight - 20 - recipeTreeHeightMax - 15));
+            int messageSectionHeightEst = messageLinesRaw > 0 ? Math.min(messageLinesRaw * 10 + 20, availableForMessagesMax) : 0;
+
+            int availableTreeHeight1 = Math.max(0, panelMaxHeight - 22 - (messageSectionHeightEst > 0 ? (messageSectionHeightEst + 15) : 0));
+            int safeLines = Math.max(1, visibleLines);
+            int computedLine1 = Math.min(16, Math.max(6, (int)Math.floor((float)availableTreeHeight1 / (float)safeLines)));
+            int treeHeightActual = safeLines * computedLine1;
+
+            int availableForMessages2 = Math.max(0, Math.min((int)(height * 0.4), panelMaxHeight - 20 - treeHeightActual - 15));
+            int messageSectionHeight = messageLinesRaw > 0 ? Math.min(messageLinesRaw * 10 + 20, availableForMessages2) : 0;
+            int desiredPanelHeight = 20 + treeHeightActual + messageSectionHeight + 15;
+            int panelHeight = Math.min(panelMaxHeight, desiredPanelHeight);
+
+            int panelX = in.widgetX;
+            int panelY = in.widgetY;
+
+            fill(panelX, panelY, panelX + panelWidth, panelY + panelHeight, DARK_PANEL_BG);
+            fill(panelX, panelY, panelX + panelWidth, panelY + 20, HEADER_BG);
+            for (int i = 0; i < 2; i++) {
+                border(panelX - i, panelY - i, panelWidth + i * 2, panelHeight + i * 2, 0xFFDAA520);
+            }
+
+            Component title = Component.literal("Recipe: " + in.selectedRecipe)
+                .setStyle(Style.EMPTY.withColor(ChatFormatting.GOLD).withBold(true));
+            int titleWidth = font.width(title);
+            int maxTitleWidth = Math.max(20, panelWidth - 10);
+            float titleScale = titleWidth > maxTitleWidth ? (float)maxTitleWidth / (float)titleWidth : 1.0f;
+            scaledText(title, null, panelX + (panelWidth - Math.min(titleWidth, maxTitleWidth)) / 2f, panelY + 5, titleScale, 0, 0xFFFFFFFF);
+
+            if (in.repositioning) {
+                String repoText = "◆ Click to place widget ◆";
+                text(null, repoText, panelX + panelWidth - font.width(repoText) - 5, panelY + panelHeight - 12, GOLD, true);
+            }
+
+            fill(panelX, panelY + 19, panelX + panelWidth, panelY + 20, 0x99608C35);
+
+            int availableTreeHeight = Math.max(0, panelHeight - 22 - (messageSectionHeight > 0 ? (messageSectionHeight + 15) : 0));
+            nodeLineHeight = Math.min(16, Math.max(6, (int)Math.floor((float)availableTreeHeight / (float)safeLines)));
+            treeScale = nodeLineHeight / 16.0f;
+            int treeEndY = treeNode(in.recipeTree, panelX, panelY + 22, 0, SandboxWidget.rootPath(in.selectedRecipe));
+
+            if (messageSectionHeight > 0) {
+                fill(panelX, treeEndY, panelX + panelWidth, treeEndY + 1, 0x99608C35);
+                messages(panelX, treeEndY + 6, panelWidth, panelY + panelHeight - 5);
+            }
+            return panelY + panelHeight;
+        }
+
+        private boolean isExpanded(long path) {
+            return in.expansion != null && in.expansion.isExpanded(path);
+        }
+
+        private int countVisibleLines(RecipeManager.RecipeNode node, long parentPath) {
+            if (node == null) return 0;
+            int count = 1;
+            long nodeKey = ExpansionState.child(parentPath, node.name);
+            if (node.hasIngredients() && isExpanded(nodeKey)) {
+                for (RecipeManager.RecipeNode child : node.getIngredients()) {
+                    count += countVisibleLines(child, nodeKey);
+                }
+            }
+            return count;
+        }
+
+        private int treeNode(RecipeManager.RecipeNode node, int x, int y, int level, long parentPath) {
+            if (node == null) return y;
+            int unitIndent = Math.max(4, Math.round(RECIPE_LEVEL_INDENT * treeScale));
+            int indent = level * unitIndent;
+            boolean hasEnough = node.amount == 0;
+            long nodeKey = ExpansionState.child(parentPath, node.name);
+            boolean expanded = isExpanded(nodeKey);
+            boolean hasChildren = node.hasIngredients();
+            int nodeBaseWidth = Math.max(100, in.widgetWidth - 20); // account for panel padding
+            int nodeHeight = Math.max(6, nodeLineHeight);
+            int nodeWidth = nodeBaseWidth - indent;
+
+            fill(x + indent, y, x + indent + nodeWidth, y + nodeHeight, DARK_PANEL_BG).hover = true;
+            hits.add(x + indent, y, nodeWidth + 1, nodeHeight + 1, HIT_NODE, nodeKey, node);
+            border(x + indent, y, nodeWidth, nodeHeight, hasEnough ? 0x88608C35 : 0x88FF5555);
+            if (hasChildren) {
+                text(null, expanded ? "▼" : "▶", x + indent + Math.max(3, Math.round(5 * treeScale)),
+                     y + Math.max(1, Math.round(4 * treeScale)), 0xFFFFFFFF, false);
+            }
+
+            int namePad = hasChildren ? Math.max(14, Math.round(25 * treeScale)) : Math.max(6, Math.round(10 * treeScale));
+            int nameX = x + indent + namePad;
+            int textColor = level == 0 ? GOLD : (hasEnough ? 0xFFFFFFFF : 0xFFFF6B6B);
+            String amountText = node.amount + "× ";
+            int amountColor = hasEnough ? 0xFF6EFF6E : 0xFFFF6B6B;
+            Component itemName = Component.literal(node.name)
+                .setStyle(Style.EMPTY.withColor(textColor).withBold(level == 0));
+            int amountWidth = font.width(amountText);
+            int totalTextWidth = amountWidth + font.width(itemName);
+            int maxTextWidth = Math.max(10, nodeWidth - namePad);
+            int adjustedMaxTextWidth = (int)Math.floor(maxTextWidth / Math.max(0.01f, treeScale));
+            float textScaleLocal = totalTextWidth > adjustedMaxTextWidth ? (float)adjustedMaxTextWidth / (float)totalTextWidth : 1.0f;
+            float textScale = Math.min(1.0f, textScaleLocal) * treeScale;
+            float textY = y + Math.max(1, Math.round(4 * treeScale));
+            scaledText(null, amountText, nameX, textY, textScale, 0, amountColor);
+            scaledText(itemName, null, nameX, textY, textScale, amountWidth, 0xFFFFFFFF);
+
+            y += nodeHeight;
+            if (hasChildren && expanded) {
+                int lineColor = 0xFF777777;
+                for (RecipeManager.RecipeNode child : node.getIngredients()) {
+                    int lineStartX = x + indent + Math.max(4, Math.round(6 * treeScale));
+                    int childIndentX = x + indent + unitIndent;
+                    int vertLen = Math.max(3, Math.round(8 * treeScale));
+                    fill(lineStartX, y, lineStartX + 1, y + vertLen, lineColor);
+                    fill(lineStartX, y + vertLen, childIndentX, y + vertLen + 1, lineColor);
+                    y = treeNode(child, x, y, level + 1, nodeKey);
+                }
+            }
+            return y;
+        }
+
+        private int countMessageLines(int width) {
+            int lineCount = 1;
+            List<String> messages = in.messages;
+            if (messages.isEmpty()) return lineCount;
+            if (messages.size() == 1 && messages.get(0).equals(CRAFTABLE_HEADER)) return lineCount;
+            for (String message : messages) {
+                if (message.equals(CRAFTABLE_HEADER)) continue;
+                lineCount += wrap(message, width - 15).size();
+            }
+            return lineCount;
+        }
+
+        private List<String> wrap(String message, int wrapWidth) {
+            List<String> lines = new ArrayList<>();
+            StringBuilder line = new StringBuilder();
+            for (String word : message.split(" ")) {
+                if (font.width(line.toString() + word) > wrapWidth) {
+                    lines.add(line.toString());
+                    line = new StringBuilder(message.startsWith("   ") ? "      " : "   ").append(word).append(" ");
+                } else {
+                    line.append(word).append(" ");
+                }
+            }
+            if (line.length() > 0) lines.add(line.toString());
+            return lines;
+        }
+
+        private void messages(int x, int y, int width, int maxY) {
+            int baseHeader = 13;
+            int baseLine = 10;
+            int availableHeight = Math.max(0, maxY - y);
+            int lines = countMessageLines(width);
+            int desiredHeight = baseHeader + Math.max(0, (lines - 1) * baseLine);
+            float scale = desiredHeight > 0 ? Math.min(1.0f, Math.max(0.4f, (float)availableHeight / (float)desiredHeight)) : 1.0f;
+
+            if (y + Math.round(baseLine * scale) > maxY) return;
+            Component header = Component.literal(CRAFTABLE_HEADER)
+                .setStyle(Style.EMPTY.withColor(ChatFormatting.YELLOW).withBold(true));
+            scaledText(header, null, x + 5, y, scale, 0, 0xFFFFFFFF);
+
+            List<String> sorted = new ArrayList<>(in.messages);
+            if (sorted.size() == 1 && sorted.get(0).equals(CRAFTABLE_HEADER)) return;
+            y += Math.round(baseHeader * scale);
+
+            sorted.sort((a, b) -> {
+                if (a.equals(CRAFTABLE_HEADER)) return -1;
+                if (b.equals(CRAFTABLE_HEADER)) return 1;
+                return Integer.compare(extractAmount(b), extractAmount(a));
+            });
+
+            int unscaledWrapWidth = Math.max(10, (int)Math.floor((width - 15) / Math.max(0.01f, scale)));
+            for (String message : sorted) {
+                if (message.equals(CRAFTABLE_HEADER)) continue;
+                int textColor = message.startsWith("   ") ? 0xFFFF9D00 : 0xFFFFFFFF;
+                List<String> wrapped = wrap(message, unscaledWrapWidth);
+                for (int i = 0; i < wrapped.size(); i++) {
+                    // The last line of a message sits one pixel tighter than wrapped lines
+                    int advance = i == wrapped.size() - 1 ? baseLine - 1 : baseLine;
+                    if (y + Math.round(advance * scale) > maxY) return;
+                    scaledText(null, wrapped.get(i), x + 5, y, scale, 0, textColor);
+                    y += Math.round(advance * scale);
+                }
+            }
+        }
+
+        private int extractAmount(String message) {
+            try {
+                int xIndex = message.indexOf('×');
+                if (xIndex > 0) {
+                    return Integer.parseInt(message.substring(0, xIndex).trim());
+                }
+            } catch (NumberFormatException e) {
+            }
+            return 0;
+        }
+
+        void queuePanel(int panelX, int panelY) {
+            CraftQueuePlanner.QueuePlan plan = in.queuePlan;
+            int panelWidth = in.widgetWidth;
+            int lineHeight = 10;
+
+            List<String> lines = new ArrayList<>();
+            List<Integer> colors = new ArrayList<>();
+            for (CraftQueuePlanner.TargetStatus status : plan.targets) {
+                lines.add((status.ready ? "✔ " : "✖ ") + status.amount + "× " + status.recipe);
+                colors.add(status.ready ? 0xFF6EFF6E : 0xFFFF6B6B);
+            }
+            if (!plan.missing.isEmpty()) {
+                lines.add("Missing -");
+                colors.add(0xFFFFFF55);
+                int shown = 0;
+                for (Map.Entry<String, Long> entry : plan.missing.entrySet()) {
+                    if (shown++ >= QUEUE_MAX_MISSING_LINES) {
+                        lines.add("   …and " + (plan.missing.size() - QUEUE_MAX_MISSING_LINES) + " more");
+                        colors.add(0xFFAAAAAA);
+                        break;
+                    }
+                    lines.add("   " + entry.getValue() + "× " + entry.getKey());
+                    colors.add(0xFFFF9D00);
+                }
+            }
+
+            int panelHeight = Math.min(22 + lines.size() * lineHeight + 4, Math.max(30, in.screenHeight - panelY - 10));
+
+            fill(panelX, panelY, panelX + panelWidth, panelY + panelHeight, DARK_PANEL_BG);
+            fill(panelX, panelY, panelX + panelWidth, panelY + 20, HEADER_BG);
+            for (int i = 0; i < 2; i++) {
+                border(panelX - i, panelY - i, panelWidth + i * 2, panelHeight + i * 2, 0xFFDAA520);
+            }
+            Component title = Component.literal("Craft Queue (" + plan.targets.size() + ")")
+                .setStyle(Style.EMPTY.withColor(ChatFormatting.GOLD).withBold(true));
+            text(title, null, panelX + (panelWidth - font.width(title)) / 2, panelY + 6, 0xFFFFFFFF, false);
+            fill(panelX, panelY + 19, panelX + panelWidth, panelY + 20, 0x99608C35);
+
+            int y = panelY + 24;
+            int maxTextWidth = Math.max(10, panelWidth - 10);
+            for (int i = 0; i < lines.size(); i++) {
+                if (y + lineHeight > panelY + panelHeight) break;
+                String line = lines.get(i);
+                if (font.width(line) > maxTextWidth) {
+                    line = font.plainSubstrByWidth(line, maxTextWidth - font.width("...")) + "...";
+                }
+                text(null, line, panelX + 5, y, colors.get(i), false);
+                y += lineHeight;
+            }
+        }
+    }
+}
@@ -3,7 +3,6 @@ package inventoryreader.ir;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import net.fabricmc.api.ClientModInitializer;
-import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.minecraft.client.KeyMapping;
 import net.minecraft.client.Minecraft;
@@ -15,7 +14,6 @@ import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,16 +23,15 @@ import java.util.Map;
 
 public class InventoryReaderClient implements ClientModInitializer {
     private final Map<String, Integer> changesData = new HashMap<>();
-    private int tickCounter = 0;
-    private static final File DATA_FILE = new File(FilePathManager.DATA_DIR, "inventorydata.json");
+    private static final int INVENTORY_SCAN_PERIOD_TICKS = 2;
+    static final File DATA_FILE = new File(FilePathManager.DATA_DIR, "inventorydata.json");
+    static final String INVENTORY_TITLE = "Player Inventory";
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     // private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private static KeyMapping openSandboxViewerKey;
     private static KeyMapping openWidgetCustomizationKey;
     private static KeyMapping toggleWidgetKey;
     private static KeyMapping openPositioningHudKey;
-    public static boolean shouldOpenSandboxViewer = false;
-    public static boolean shouldOpenWidgetCustomization = false;
 
     @Override
     public void onInitializeClient() {
@@ -62,39 +59,11 @@ public class InventoryReaderClient implements ClientModInitializer {
             KeyMapping.Category.MISC
         ));
 
-        ClientTickEvents.END_CLIENT_TICK.register(client -> {
-            if (openSandboxViewerKey.consumeClick() || shouldOpenSandboxViewer) {
-                client.execute(() -> client.setScreen(new SandboxViewer()));
-                shouldOpenSandboxViewer = false;
-            }
-            
-            if (openWidgetCustomizationKey.consumeClick() || shouldOpenWidgetCustomization) {
-                client.execute(() -> client.setScreen(new WidgetCustomizationMenu()));
-                shouldOpenWidgetCustomization = false;
-            }
-
-            if (toggleWidgetKey.consumeClick()) {
-                client.execute(() -> {
-                    SandboxWidget widget = SandboxWidget.getInstance();
-                    boolean newState = !widget.isEnabled();
-                    widget.setEnabled(newState);
-                    if (newState) {
-                        // If enabled with a recipe selected previously in SandboxViewer, keep it; else no-op
-                    }
-                });
-            }
-
-            if (openPositioningHudKey.consumeClick()) {
-                client.execute(() -> client.setScreen(new WidgetCustomizationMenu(true)));
-            }
-            
+        TickScheduler scheduler = TickScheduler.getInstance();
+        scheduler.every("keys", 1, TickScheduler.Priority.HIGH, this::handleKeys);
+        scheduler.every("inventory_scan", INVENTORY_SCAN_PERIOD_TICKS, TickScheduler.Priority.NORMAL, client -> {
             if (client.player != null && client.level != null) {
-                if (tickCounter >= 1) {
-                    checkInventory(client);
-                    tickCounter = 0;
-                } else {
-                    tickCounter++;
-                }
+                checkInventory(client);
             }
         });
 
@@ -105,6 +74,32 @@ public class InventoryReaderClient implements ClientModInitializer {
         
         // scheduler.scheduleAtFixedRate(this::saveData, 0, 5, TimeUnit.SECONDS);
         SandboxWidget.getInstance();
+        DriftReconciler.getInstance().start();
+    }
+
+    private void handleKeys(Minecraft client) {
+        if (openSandboxViewerKey.consumeClick()) {
+            client.execute(() -> client.setScreen(new SandboxViewer()));
+        }
+        
+        if (openWidgetCustomizationKey.consumeClick()) {
+            client.execute(() -> client.setScreen(new WidgetCustomizationMenu()));
+        }
+
+        if (toggleWidgetKey.consumeClick()) {
+            client.execute(() -> {
+                SandboxWidget widget = SandboxWidget.getInstance();
+                boolean newState = !widget.isEnabled();
+                widget.setEnabled(newState);
+                if (newState) {
+                    // If enabled with a recipe selected previously in SandboxViewer, keep it; else no-op
+                }
+            });
+        }
+
+        if (openPositioningHudKey.consumeClick()) {
+            client.execute(() -> client.setScreen(new WidgetCustomizationMenu(true)));
+        }
     }
 
     private Map<String, Map<String, Integer>> loadAllInventoryDataFromFile() {
@@ -122,8 +117,7 @@ public class InventoryReaderClient implements ClientModInitializer {
         assert client.player != null;
         Inventory inventory = client.player.getInventory();
         if (inventory != null) {
-            String title = "Player Inventory";
-            saveInventoryContents(inventory, title);
+            saveInventoryContents(inventory, INVENTORY_TITLE);
         }
     }
 
@@ -148,6 +142,10 @@ public class InventoryReaderClient implements ClientModInitializer {
         } else {
             fileSaveInventoryData = compareInventoryData(currentInventoryData, title, fileSaveInventoryData);
         }
+        ItemLocationIndex locations = ItemLocationIndex.getInstance();
+        if (!changesData.isEmpty() || !locations.hasLocation(ResourcesManager.SOURCE_INVENTORY)) {
+            locations.replace(ResourcesManager.SOURCE_INVENTORY, currentInventoryData);
+        }
         saveDataToFile(fileSaveInventoryData);
     }
 
@@ -173,13 +171,12 @@ public class InventoryReaderClient implements ClientModInitializer {
     }
 
     private void saveDataToFile(Map<String, Map<String, Integer>> allInventoryData) {
-        try (FileWriter writer = new FileWriter(DATA_FILE)) {
-            gson.toJson(allInventoryData, writer);
-        } catch (IOException e) {
-            InventoryReader.LOGGER.error("Failed to save inventory data to file", e);
-        }
+        // Runs every other tick; only rewrite the file when the inventory actually changed
+        if (changesData.isEmpty()) return;
+        // Replaced atomically: the drift reconciler reads this file from another thread
+        ResourcesManager.atomicWriteJson(DATA_FILE, gson.toJson(allInventoryData));
         ResourcesManager RESOURCES_MANAGER = ResourcesManager.getInstance();
-        RESOURCES_MANAGER.saveData(changesData);
+        RESOURCES_MANAGER.saveData(ResourcesManager.SOURCE_INVENTORY, changesData);
         changesData.clear();
     }
 }
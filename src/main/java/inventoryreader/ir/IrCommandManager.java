@@ -1,6 +1,8 @@
 package inventoryreader.ir;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
@@ -11,6 +13,9 @@ import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.Style;
 
+import java.util.List;
+import java.util.Map;
+
 public class IrCommandManager implements ClientModInitializer{
 
     @Override
@@ -34,6 +39,14 @@ public class IrCommandManager implements ClientModInitializer{
                         .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
                     context.getSource().sendFeedback(Component.literal("- /ir widget: Open Widget Customization Menu")
                         .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                    context.getSource().sendFeedback(Component.literal("- /ir find <item>: Show where an item is stored")
+                        .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                    context.getSource().sendFeedback(Component.literal("- /ir reconcile [fix|auto <on|off>]: Check tracked counts for drift")
+                        .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                    context.getSource().sendFeedback(Component.literal("- /ir tickbudget [micros]: Show or set the per-tick time budget")
+                        .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                    context.getSource().sendFeedback(Component.literal("- /ir stats: Show performance counters")
+                        .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
                     context.getSource().sendFeedback(Component.literal("- /ir credits: Show credits")
                         .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
                     return 1;
@@ -67,7 +80,9 @@ public class IrCommandManager implements ClientModInitializer{
                     .executes(context -> {
                         InventoryReader.LOGGER.info("Opening SandboxViewer GUI (deferred)");
                         try {
-                            inventoryreader.ir.InventoryReaderClient.shouldOpenSandboxViewer = true;
+                            // Deferred to the end of the tick, after the chat screen has closed
+                            TickScheduler.getInstance().submit("open_sandbox_viewer", TickScheduler.Priority.HIGH,
+                                client -> client.setScreen(new SandboxViewer()));
                         } catch (Exception e) {
                             InventoryReader.LOGGER.error("Failed to schedule SandboxViewer GUI", e);
                         }
@@ -76,9 +91,126 @@ public class IrCommandManager implements ClientModInitializer{
                 )
                 .then(literal("widget")
                     .executes(context -> {
-                        inventoryreader.ir.InventoryReaderClient.shouldOpenWidgetCustomization = true;
+                        TickScheduler.getInstance().submit("open_widget_customization", TickScheduler.Priority.HIGH,
+                            client -> client.setScreen(new WidgetCustomizationMenu()));
+                        return 1;
+                    })
+                )
+                .then(literal("find")
+                    .then(argument("item", StringArgumentType.greedyString())
+                        .executes(context -> {
+                            String query = StringArgumentType.getString(context, "item").trim();
+                            List<ItemLocationIndex.Match> matches = ItemLocationIndex.getInstance().search(query, 5);
+                            if (matches.isEmpty()) {
+                                context.getSource().sendFeedback(Component.literal("No stored item matches \"" + query + "\".")
+                                    .setStyle(Style.EMPTY.withColor(ChatFormatting.YELLOW)));
+                                return 1;
+                            }
+                            // An exact name hides the looser matches listed after it
+                            if (matches.get(0).name.equalsIgnoreCase(query)) {
+                                matches = matches.subList(0, 1);
+                            }
+                            for (ItemLocationIndex.Match match : matches) {
+                                context.getSource().sendFeedback(Component.literal(match.name + " (" + match.total + ")")
+                                    .setStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)));
+                                for (Map.Entry<String, Integer> location : match.locations.entrySet()) {
+                                    context.getSource().sendFeedback(Component.literal("- " + location.getKey() + ": " + location.getValue())
+                                        .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                                }
+                            }
+                            return 1;
+                        })
+                    )
+                )
+                .then(literal("reconcile")
+                    .executes(context -> {
+                        DriftReconciler reconciler = DriftReconciler.getInstance();
+                        DriftReconciler.Report report = reconciler.getLastReport();
+                        if (report == null) {
+                            context.getSource().sendFeedback(Component.literal("No reconciliation pass has finished yet.")
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.YELLOW)));
+                        } else if (report.drift.isEmpty()) {
+                            context.getSource().sendFeedback(Component.literal("Last pass: " + report.sourcesChecked + " sources checked, no drift.")
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.GREEN)));
+                        } else {
+                            context.getSource().sendFeedback(Component.literal("Last pass: drift in " + report.drift.size() + " of "
+                                    + report.sourcesChecked + " sources (" + report.driftItems + " items), corrected " + report.corrected.size() + ".")
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)));
+                            for (Map.Entry<String, Map<String, Integer>> source : report.drift.entrySet()) {
+                                context.getSource().sendFeedback(Component.literal("- " + source.getKey() + ": " + source.getValue())
+                                    .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                            }
+                        }
+                        if (reconciler.requestPass(reconciler.isAutoCorrect())) {
+                            context.getSource().sendFeedback(Component.literal("Started a new pass; run /ir reconcile again for its result.")
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                        }
+                        return 1;
+                    })
+                    .then(literal("fix")
+                        .executes(context -> {
+                            boolean started = DriftReconciler.getInstance().requestPass(true);
+                            context.getSource().sendFeedback(Component.literal(started
+                                    ? "Reconciling and correcting drift in the background."
+                                    : "A reconciliation pass is already running.")
+                                .setStyle(Style.EMPTY.withColor(started ? ChatFormatting.GREEN : ChatFormatting.YELLOW)));
+                            return 1;
+                        })
+                    )
+                    .then(literal("auto")
+                        .then(literal("on")
+                            .executes(context -> {
+                                DriftReconciler.getInstance().setAutoCorrect(true);
+                                context.getSource().sendFeedback(Component.literal("Periodic passes will correct drift.")
+                                    .setStyle(Style.EMPTY.withColor(ChatFormatting.GREEN)));
+                                return 1;
+                            })
+                        )
+                        .then(literal("off")
+                            .executes(context -> {
+                                DriftReconciler.getInstance().setAutoCorrect(false);
+                                context.getSource().sendFeedback(Component.literal("Periodic passes will only report drift.")
+                                    .setStyle(Style.EMPTY.withColor(ChatFormatting.YELLOW)));
+                                return 1;
+                            })
+                        )
+                    )
+                )
+                .then(literal("tickbudget")
+                    .executes(context -> {
+                        context.getSource().sendFeedback(Component.literal("Tick budget: "
+                                + TickScheduler.getInstance().getBudgetNanos() / 1000 + " µs per tick.")
+                            .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                        return 1;
+                    })
+                    .then(argument("micros", IntegerArgumentType.integer(1))
+                        .executes(context -> {
+                            int micros = IntegerArgumentType.getInteger(context, "micros");
+                            TickScheduler.getInstance().setBudgetNanos(micros * 1000L);
+                            context.getSource().sendFeedback(Component.literal("Tick budget set to " + micros + " µs.")
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.GREEN)));
+                            return 1;
+                        })
+                    )
+                )
+                .then(literal("stats")
+                    .executes(context -> {
+                        context.getSource().sendFeedback(Component.literal("Inventory Reader stats:")
+                            .setStyle(Style.EMPTY.withColor(ChatFormatting.GOLD)));
+                        for (String line : IrMetrics.report()) {
+                            context.getSource().sendFeedback(Component.literal("- " + line)
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.WHITE)));
+                        }
                         return 1;
                     })
+                    .then(literal("reset")
+                        .executes(context -> {
+                            IrMetrics.reset();
+                            context.getSource().sendFeedback(Component.literal("Stats reset.")
+                                .setStyle(Style.EMPTY.withColor(ChatFormatting.GREEN)));
+                            return 1;
+                        })
+                    )
                 )
                 .then(literal("credits")
                     .executes(context -> {
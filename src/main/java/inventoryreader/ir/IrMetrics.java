@@ -0,0 +1,75 @@
+package inventoryreader.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight in-process counters and timers, reported by {@code /ir stats}.
+ *
+ * Timers keep a call count, total, max and an exponential moving average so a few slow
+ * samples stand out without storing history. Everything is safe to call from any thread.
+ */
+public final class IrMetrics {
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    private IrMetrics() {}
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public static long count(String name) {
+        LongAdder c = COUNTERS.get(name);
+        return c == null ? 0 : c.sum();
+    }
+
+    public static void recordNanos(String name, long nanos) {
+        TIMERS.computeIfAbsent(name, k -> new Timer()).record(nanos);
+    }
+
+    public static void reset() {
+        COUNTERS.clear();
+        TIMERS.clear();
+    }
+
+    /** Human-readable report lines, counters first, each group sorted by name. */
+    public static List<String> report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(COUNTERS).entrySet()) {
+            lines.add(e.getKey() + ": " + e.getValue().sum());
+        }
+        for (Map.Entry<String, Timer> e : new TreeMap<>(TIMERS).entrySet()) {
+            lines.add(e.getKey() + ": " + e.getValue().describe());
+        }
+        return lines;
+    }
+
+    private static final class Timer {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private double ewmaNanos;
+
+        synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+            ewmaNanos = count == 1 ? nanos : ewmaNanos * 0.95 + nanos * 0.05;
+        }
+
+        synchronized String describe() {
+            double avgUs = count == 0 ? 0 : totalNanos / 1000.0 / count;
+            return String.format("n=%d avg=%.1fµs recent=%.1fµs max=%.1fµs",
+                    count, avgUs, ewmaNanos / 1000.0, maxNanos / 1000.0);
+        }
+    }
+}
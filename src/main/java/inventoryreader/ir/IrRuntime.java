@@ -0,0 +1,219 @@
+package inventoryreader.ir;
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The mod's background threads, all in one place and all stopped with the client.
+ *
+ * Blocking work (HTTP, file reads and writes) runs on virtual threads, one per task. CPU
+ * work such as planning, scanning and indexing runs on a small fork-join pool of daemon
+ * threads, sized to leave the render and server threads a core. Timed work goes through a
+ * single scheduler thread that only hands tasks to one of the two pools when they come
+ * due, so a slow task never delays another's timer. Code that needs its tasks run one at a
+ * time takes a {@link #serial} or {@link #serialIo} lane instead of owning a thread.
+ *
+ * Every task is timed in {@link IrMetrics} under {@code runtime.<pool>.<task>}, with
+ * {@code runtime.<pool>.failed} counting tasks that threw. On client stop the pools get a
+ * short grace period to finish, then are interrupted.
+ */
+public final class IrRuntime {
+    private static final IrRuntime INSTANCE = new IrRuntime();
+    private static final long SHUTDOWN_GRACE_MS = 2_000;
+
+    private final ExecutorService io;
+    private final ForkJoinPool cpu;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+    private IrRuntime() {
+        io = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("InventoryReader-IO-", 0).factory());
+
+        AtomicInteger cpuThreads = new AtomicInteger();
+        int parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        cpu = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("InventoryReader-CPU-" + cpuThreads.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }, (t, e) -> InventoryReader.LOGGER.error("Uncaught exception on {}", t.getName(), e), false);
+
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "InventoryReader-Scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> shutdown());
+    }
+
+    public static IrRuntime getInstance() {
+        return INSTANCE;
+    }
+
+    /** Virtual-thread executor for blocking I/O; tasks run untimed, callers time what matters. */
+    public ExecutorService io() {
+        return io;
+    }
+
+    /** The CPU pool, for callers that fork work across it. */
+    public ForkJoinPool cpu() {
+        return cpu;
+    }
+
+    /** Runs {@code task} on a virtual thread. */
+    public CompletableFuture<Void> runIo(String name, Runnable task) {
+        return CompletableFuture.runAsync(timed("io", name, task), io);
+    }
+
+    /** Computes {@code task} on the CPU pool. */
+    public <T> CompletableFuture<T> supplyCpu(String name, Supplier<T> task) {
+        String timer = "runtime.cpu." + name;
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } catch (RuntimeException e) {
+                IrMetrics.increment("runtime.cpu.failed");
+                throw e;
+            } finally {
+                IrMetrics.recordNanos(timer, System.nanoTime() - start);
+            }
+        }, cpu);
+    }
+
+    /**
+     * An executor running its tasks one at a time, in submission order, on the CPU pool.
+     * Each lane is independent; tasks are timed under {@code runtime.cpu.<name>}.
+     */
+    public Executor serial(String name) {
+        return new SerialExecutor("cpu", name, cpu);
+    }
+
+    /**
+     * Like {@link #serial}, but on virtual threads, for one-at-a-time work that reads or
+     * writes files. Tasks are timed under {@code runtime.io.<name>}.
+     */
+    public Executor serialIo(String name) {
+        return new SerialExecutor("io", name, io);
+    }
+
+    /** Runs {@code task} on {@code target} once {@code delay} has passed. */
+    public ScheduledFuture<?> schedule(String name, Runnable task, long delay, TimeUnit unit, Executor target) {
+        Runnable handoff = target == io ? timed("io", name, task) : target == cpu ? timed("cpu", name, task) : task;
+        return scheduler.schedule(() -> dispatch(target, handoff), delay, unit);
+    }
+
+    /**
+     * Runs {@code task} on the scheduler thread itself, repeatedly; it must only be a quick
+     * check that hands real work to a pool.
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(String name, Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        return scheduler.scheduleWithFixedDelay(timed("scheduler", name, task), initialDelay, delay, unit);
+    }
+
+    public boolean isStopped() {
+        return stopped.get();
+    }
+
+    /** Stops accepting work, waits briefly for running tasks, then interrupts what is left. */
+    public void shutdown() {
+        if (!stopped.compareAndSet(false, true)) return;
+        scheduler.shutdownNow();
+        cpu.shutdown();
+        io.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE_MS);
+        try {
+            if (!cpu.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                InventoryReader.LOGGER.warn("CPU tasks still running at shutdown; interrupting");
+                cpu.shutdownNow();
+            }
+            if (!io.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                InventoryReader.LOGGER.warn("I/O tasks still running at shutdown; interrupting");
+                io.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            cpu.shutdownNow();
+            io.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch(Executor target, Runnable task) {
+        try {
+            target.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Only after shutdown; the task is dropped with the rest
+            IrMetrics.increment("runtime.rejected");
+        }
+    }
+
+    private static Runnable timed(String pool, String name, Runnable task) {
+        String timer = "runtime." + pool + "." + name;
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                IrMetrics.increment("runtime." + pool + ".failed");
+                InventoryReader.LOGGER.error("Background task {} failed", name, e);
+            } finally {
+                IrMetrics.recordNanos(timer, System.nanoTime() - start);
+            }
+        };
+    }
+
+    private final class SerialExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean active = new AtomicBoolean(false);
+        private final String pool;
+        private final String name;
+        private final Executor target;
+
+        SerialExecutor(String pool, String name, Executor target) {
+            this.pool = pool;
+            this.name = name;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(timed(pool, name, task));
+            schedule();
+        }
+
+        private void schedule() {
+            if (!tasks.isEmpty() && active.compareAndSet(false, true)) {
+                dispatch(target, this::runAll);
+            }
+        }
+
+        private void runAll() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+            } finally {
+                active.set(false);
+                // A task added between the last poll and the reset would otherwise wait for the next one
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package inventoryreader.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from item name to the containers, sacks and inventory holding it.
+ *
+ * Names are case-folded, so an exact lookup is one hash probe. The index is filled from
+ * allcontainerData.json the first time it is queried; from then on container diffs from
+ * {@link StorageReader}, sack snapshots and inventory changes are applied as they happen
+ * instead of rescanning the file. Before that first query, container diffs are skipped,
+ * since the file read on load already contains them.
+ */
+public final class ItemLocationIndex {
+    private static final ItemLocationIndex INSTANCE = new ItemLocationIndex();
+
+    // folded item name -> location -> count
+    private final Map<String, Map<String, Integer>> byItem = new HashMap<>();
+    // location -> folded item name -> count, for replacing a location's contents
+    private final Map<String, Map<String, Integer>> byLocation = new HashMap<>();
+    private final Map<String, String> displayNames = new HashMap<>();
+    private SearchIndex<String> names = null;
+    private boolean loaded = false;
+    private long version = 0;
+
+    private ItemLocationIndex() {}
+
+    public static ItemLocationIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /** Bumped on every change, so screens can tell when to re-run a search. */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /** Adds per-item count changes seen in {@code location}. */
+    public synchronized void apply(String location, Map<String, Integer> deltas) {
+        if (!loaded) return;
+        for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+            add(location, e.getKey(), e.getValue() == null ? 0 : e.getValue());
+        }
+        version++;
+    }
+
+    /** Makes {@code contents} everything {@code location} holds. */
+    public synchronized void replace(String location, Map<String, Integer> contents) {
+        Map<String, Integer> previous = new HashMap<>(byLocation.getOrDefault(location, Collections.emptyMap()));
+        Map<String, Integer> folded = new HashMap<>();
+        for (Map.Entry<String, Integer> e : contents.entrySet()) {
+            String key = fold(e.getKey());
+            if (key.isEmpty() || e.getValue() == null) continue;
+            folded.merge(key, e.getValue(), Integer::sum);
+            displayNames.putIfAbsent(key, e.getKey().trim());
+        }
+        if (folded.equals(previous)) return;
+        for (Map.Entry<String, Integer> e : previous.entrySet()) {
+            if (!folded.containsKey(e.getKey())) add(location, e.getKey(), -e.getValue());
+        }
+        for (Map.Entry<String, Integer> e : folded.entrySet()) {
+            add(location, e.getKey(), e.getValue() - previous.getOrDefault(e.getKey(), 0));
+        }
+        version++;
+    }
+
+    public synchronized boolean hasLocation(String location) {
+        return byLocation.containsKey(location);
+    }
+
+    /** Forgets everything; the container file is read again on next use. */
+    public synchronized void clear() {
+        byItem.clear();
+        byLocation.clear();
+        displayNames.clear();
+        names = null;
+        loaded = false;
+        version++;
+    }
+
+    /** Where the item with exactly this name (ignoring case) is, with counts. */
+    public synchronized Map<String, Integer> locationsOf(String item) {
+        ensureLoaded();
+        Map<String, Integer> locations = byItem.get(fold(item));
+        return locations == null ? Collections.emptyMap() : new LinkedHashMap<>(locations);
+    }
+
+    /**
+     * Items matching {@code query}, best first: an exact name, then names containing the
+     * query, then names containing every word of it, then names containing its letters in
+     * order (so "rmith" finds Refined Mithril).
+     */
+    public synchronized List<Match> search(String query, int limit) {
+        ensureLoaded();
+        String q = fold(query);
+        List<Match> results = new ArrayList<>();
+        if (q.isEmpty()) return results;
+        if (names == null) names = SearchIndex.build(byItem.keySet(), displayNames::get);
+
+        Set<String> keys = new LinkedHashSet<>();
+        if (byItem.containsKey(q)) keys.add(q);
+        keys.addAll(names.search(q));
+        String[] words = q.split("\\s+");
+        if (keys.size() < limit && words.length > 1) {
+            String longest = words[0];
+            for (String word : words) if (word.length() > longest.length()) longest = word;
+            for (String key : names.search(longest)) {
+                if (containsAll(key, words)) keys.add(key);
+            }
+        }
+        if (keys.size() < limit) {
+            String letters = q.replaceAll("\\s+", "");
+            for (String key : names.all()) {
+                if (isSubsequence(letters, key)) keys.add(key);
+            }
+        }
+
+        for (String key : keys) {
+            if (results.size() >= limit) break;
+            results.add(new Match(displayNames.getOrDefault(key, key), new LinkedHashMap<>(byItem.get(key))));
+        }
+        return results;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        for (Map.Entry<String, Map<String, Integer>> e : StorageReader.getInstance().loadAllContainerDataFromFile().entrySet()) {
+            for (Map.Entry<String, Integer> item : e.getValue().entrySet()) {
+                add(e.getKey(), item.getKey(), item.getValue() == null ? 0 : item.getValue());
+            }
+        }
+        version++;
+    }
+
+    private void add(String location, String item, int delta) {
+        String key = fold(item);
+        if (delta == 0 || key.isEmpty()) return;
+        if (!byItem.containsKey(key)) names = null;
+        displayNames.putIfAbsent(key, item.trim());
+        Map<String, Integer> locations = byItem.computeIfAbsent(key, k -> new LinkedHashMap<>());
+        Map<String, Integer> contents = byLocation.computeIfAbsent(location, k -> new HashMap<>());
+        int updated = locations.getOrDefault(location, 0) + delta;
+        if (updated > 0) {
+            locations.put(location, updated);
+            contents.put(key, updated);
+        } else {
+            locations.remove(location);
+            contents.remove(key);
+        }
+        if (locations.isEmpty()) {
+            byItem.remove(key);
+            displayNames.remove(key);
+            names = null;
+        }
+    }
+
+    private static String fold(String name) {
+        return name == null ? "" : SearchIndex.fold(name.trim());
+    }
+
+    private static boolean containsAll(String key, String[] words) {
+        for (String word : words) {
+            if (!key.contains(word)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSubsequence(String letters, String key) {
+        int at = 0;
+        for (int i = 0; i < key.length() && at < letters.length(); i++) {
+            if (key.charAt(i) == letters.charAt(at)) at++;
+        }
+        return at == letters.length();
+    }
+
+    public static class Match {
+        public final String name;
+        public final Map<String, Integer> locations;
+        public final int total;
+
+        public Match(String name, Map<String, Integer> locations) {
+            this.name = name;
+            this.locations = locations;
+            int sum = 0;
+            for (int count : locations.values()) sum += count;
+            this.total = sum;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package inventoryreader.ir;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link ResourcesManager#getRemainingIngredients} for a screen off the render thread.
+ *
+ * Each screen owns a slot, whose plans run one at a time on a serial lane so an older plan
+ * can never finish after a newer one. A new request supersedes any earlier one that has
+ * not finished: a queued task returns without planning and a running one has its result
+ * dropped. The screen keeps showing the last completed result and picks up the new one by
+ * comparing {@link #latest()} with what it applied last.
+ */
+public final class PlanSlot {
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Result latest = null;
+    private volatile long completedSequence = 0;
+    private final Executor lane = IrRuntime.getInstance().serial("planner");
+
+    /** Queues a plan for {@code amount} of {@code recipe}, replacing any unfinished request. */
+    public void request(String recipe, int amount) {
+        long id = sequence.incrementAndGet();
+        lane.execute(() -> {
+            if (id != sequence.get()) return;
+            long start = System.nanoTime();
+            try {
+                ResourcesManager.RemainingResponse response = ResourcesManager.getInstance().getRemainingIngredients(recipe, amount);
+                IrMetrics.recordNanos("planner.plan", System.nanoTime() - start);
+                if (id == sequence.get()) {
+                    latest = new Result(recipe, amount, response);
+                } else {
+                    IrMetrics.increment("planner.superseded");
+                }
+            } catch (Exception e) {
+                InventoryReader.LOGGER.error("Failed to plan {} x{}", recipe, amount, e);
+            } finally {
+                markCompleted(id);
+            }
+        });
+    }
+
+    private synchronized void markCompleted(long id) {
+        if (id > completedSequence) completedSequence = id;
+    }
+
+    /** Most recent completed plan, possibly for an older request; null before the first one. */
+    public Result latest() {
+        return latest;
+    }
+
+    /** True while the newest request has not finished yet. */
+    public boolean isComputing() {
+        return completedSequence < sequence.get();
+    }
+
+    public static class Result {
+        public final String recipe;
+        public final int amount;
+        public final ResourcesManager.RemainingResponse response;
+
+        public Result(String recipe, int amount, ResourcesManager.RemainingResponse response) {
+            this.recipe = recipe;
+            this.amount = amount;
+            this.response = response;
+        }
+    }
+}
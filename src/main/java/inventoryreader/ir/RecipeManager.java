@@ -4,15 +4,20 @@ import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import inventoryreader.ir.recipes.RecipeGraph;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class RecipeManager {
     private static final RecipeManager INSTANCE = new RecipeManager();
     private volatile Map<String, Map<String, Integer>> recipes = Collections.emptyMap();
     private volatile List<String> recipeNames = Collections.emptyList();
+    private volatile RecipeGraph recipeGraph = RecipeGraph.EMPTY;
+    private volatile SearchIndex<String> recipeSearch = SearchIndex.empty();
+    private final List<Runnable> reloadListeners = new java.util.concurrent.CopyOnWriteArrayList<>();
 
     private RecipeManager() {
         loadRecipes();
@@ -47,14 +52,19 @@ public class RecipeManager {
 
             Map<String, Map<String, Integer>> sanitized = sanitizeRecipes(working);
 
-            List<String> newNames = new ArrayList<>(sanitized.keySet());
+            SearchIndex<String> search = SearchIndex.build(sanitized.keySet(), name -> name);
 
             Set<String> allNames = new LinkedHashSet<>(sanitized.keySet());
             for (Map<String, Integer> m : sanitized.values()) allNames.addAll(m.keySet());
             FilePathManager.ensureResourceNames(allNames);
 
+            // Built before publishing so readers never see a graph from a different load
+            RecipeGraph graph = RecipeGraph.build(sanitized);
+
             recipes = Collections.unmodifiableMap(sanitized);
-            recipeNames = Collections.unmodifiableList(newNames);
+            recipeNames = search.all();
+            recipeSearch = search;
+            recipeGraph = graph;
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -63,6 +73,18 @@ public class RecipeManager {
     /** Re-read all recipe files. Called by RemoteRecipeFetcher after a successful fetch. */
     public synchronized void reload() {
         loadRecipes();
+        for (Runnable listener : reloadListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                InventoryReader.LOGGER.error("Recipe reload listener failed", e);
+            }
+        }
+    }
+
+    /** Registers a callback run after every {@link #reload()}, on the reloading thread. */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
     }
 
     private Map<String, Map<String, Integer>> readRecipeMap(Gson gson, File file) throws IOException {
@@ -85,10 +107,14 @@ public class RecipeManager {
         }
     }
 
+    /** All recipe names, sorted case-insensitively; the list is shared and unmodifiable. */
     public List<String> getRecipeNames() {
-        List<String> list = new ArrayList<>(recipeNames);
-        list.sort(String::compareToIgnoreCase);
-        return list;
+        return recipeNames;
+    }
+
+    /** Search index over the recipe names, rebuilt on every load. */
+    public SearchIndex<String> getRecipeSearchIndex() {
+        return recipeSearch;
     }
 
     public Map<String, Integer> getSimpleRecipe(String name, int amt) {
@@ -100,18 +126,33 @@ public class RecipeManager {
         return result;
     }
 
+    /** Scaled ingredient tree for {@code multiplier} of {@code currentName}; children are built when first asked for. */
     public RecipeNode expandRecipe(String currentName, int multiplier) {
-        if (!recipes.containsKey(currentName)) {
-            return new RecipeNode(currentName, multiplier, Collections.emptyList());
-        }
-        List<RecipeNode> ingredients = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : recipes.get(currentName).entrySet()) {
-            String item = entry.getKey();
-            int qty = entry.getValue();
-            RecipeNode expanded = expandRecipe(item, qty * multiplier);
-            ingredients.add(expanded);
+        return scaledNode(recipes, currentName, multiplier);
+    }
+
+    private static RecipeNode scaledNode(Map<String, Map<String, Integer>> recipes, String name, int multiplier) {
+        Map<String, Integer> recipe = recipes.get(name);
+        if (recipe == null || recipe.isEmpty()) {
+            return new RecipeNode(name, multiplier, Collections.emptyList());
         }
-        return new RecipeNode(currentName, multiplier, ingredients);
+        return new RecipeNode(name, multiplier, () -> {
+            List<RecipeNode> ingredients = new ArrayList<>(recipe.size());
+            for (Map.Entry<String, Integer> entry : recipe.entrySet()) {
+                ingredients.add(scaledNode(recipes, entry.getKey(), entry.getValue() * multiplier));
+            }
+            return ingredients;
+        });
+    }
+
+    /** Interned recipe graph with per-item flattened bills of materials, rebuilt on every reload. */
+    public RecipeGraph getRecipeGraph() {
+        return recipeGraph;
+    }
+
+    /** The live, unmodifiable recipe map; use {@link #getAllRecipes()} for a mutable copy. */
+    public Map<String, Map<String, Integer>> getRecipeMap() {
+        return recipes;
     }
 
     public Map<String, Map<String, Integer>> getAllRecipes() {
@@ -263,15 +304,42 @@ public class RecipeManager {
         }
     }
 
+    /**
+     * One line of an ingredient tree. Shared by plain recipe expansion and inventory-aware
+     * plans. Children may be supplied lazily and are then only created the first time
+     * {@link #getIngredients()} is called, i.e. when the node is expanded or measured.
+     */
     public static class RecipeNode {
-        public String name;
-        public int amount;
-        public List<RecipeNode> ingredients;
-        
+        public final String name;
+        public final int amount;
+        private List<RecipeNode> ingredients;
+        private Supplier<List<RecipeNode>> pending;
+
         public RecipeNode(String name, int amount, List<RecipeNode> ingredients) {
             this.name = name;
             this.amount = amount;
-            this.ingredients = ingredients;
+            this.ingredients = ingredients == null ? Collections.emptyList() : ingredients;
+        }
+
+        /** {@code children} must return a non-empty list; use the list constructor for leaves. */
+        public RecipeNode(String name, int amount, Supplier<List<RecipeNode>> children) {
+            this.name = name;
+            this.amount = amount;
+            this.pending = children;
+        }
+
+        /** True if the node has children, without creating them. */
+        public synchronized boolean hasIngredients() {
+            return pending != null || !ingredients.isEmpty();
+        }
+
+        public synchronized List<RecipeNode> getIngredients() {
+            if (pending != null) {
+                ingredients = Collections.unmodifiableList(pending.get());
+                pending = null;
+                IrMetrics.add("tree.nodes.materialized", ingredients.size());
+            }
+            return ingredients;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package inventoryreader.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item counts broken down by where they were seen: the player inventory, each container,
+ * sacks. Sources and items are interned to dense ids; each source owns a row of counts
+ * indexed by item id, grown only as far as the items it has touched. The per-item total
+ * across all sources is updated alongside every change, so applying a delta costs only as
+ * much as the items that moved.
+ *
+ * Only holds what was attributed to a source; resources.json stays the store of record for
+ * totals, and anything it holds beyond the tracked sum (manual edits, crafts, counts from
+ * before tracking) is reported by {@link ResourcesManager} as untracked.
+ */
+final class ResourceLedger {
+    private final Map<String, Integer> sourceIds = new HashMap<>();
+    private final List<String> sourceNames = new ArrayList<>();
+    private final Map<String, Integer> itemIds = new HashMap<>();
+    private final List<String> itemNames = new ArrayList<>();
+    private int[][] rows = new int[8][];
+    // Bumped whenever a source's row changes, so a reader can tell it moved underneath them
+    private long[] stamps = new long[8];
+    private long[] totals = new long[256];
+
+    synchronized boolean isEmpty() {
+        return sourceNames.isEmpty();
+    }
+
+    /** Adds {@code deltas} (keyed by resource name) to {@code source}'s counts. */
+    synchronized void add(String source, Map<String, Integer> deltas) {
+        int s = sourceId(source);
+        for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+            int delta = e.getValue() == null ? 0 : e.getValue();
+            if (delta != 0) addAt(s, itemId(e.getKey()), delta);
+        }
+        stamps[s]++;
+    }
+
+    /** Change counter of {@code source}; 0 if it has never been seen. */
+    synchronized long stamp(String source) {
+        Integer s = sourceIds.get(source);
+        return s == null ? 0 : stamps[s];
+    }
+
+    /** Change counters of every source. */
+    synchronized Map<String, Long> stamps() {
+        Map<String, Long> result = new HashMap<>();
+        for (int s = 0; s < sourceNames.size(); s++) result.put(sourceNames.get(s), stamps[s]);
+        return result;
+    }
+
+    /** Sum of {@code item} over every tracked source. */
+    synchronized long total(String item) {
+        Integer id = itemIds.get(item);
+        return id == null ? 0 : totals[id];
+    }
+
+    /** Non-zero counts of {@code item} per source, in the order sources were first seen. */
+    synchronized Map<String, Integer> sourcesOf(String item) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        Integer id = itemIds.get(item);
+        if (id == null) return result;
+        for (int s = 0; s < sourceNames.size(); s++) {
+            int c = count(s, id);
+            if (c != 0) result.put(sourceNames.get(s), c);
+        }
+        return result;
+    }
+
+    /** Non-zero counts held by {@code source}. */
+    synchronized Map<String, Integer> contentsOf(String source) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        Integer s = sourceIds.get(source);
+        if (s == null || rows[s] == null) return result;
+        int[] row = rows[s];
+        for (int item = 0; item < row.length; item++) {
+            if (row[item] != 0) result.put(itemNames.get(item), row[item]);
+        }
+        return result;
+    }
+
+    /** Every source's non-zero counts, for persisting. */
+    synchronized Map<String, Map<String, Integer>> toMap() {
+        Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+        for (String source : sourceNames) {
+            Map<String, Integer> contents = contentsOf(source);
+            if (!contents.isEmpty()) result.put(source, contents);
+        }
+        return result;
+    }
+
+    private int count(int source, int item) {
+        int[] row = rows[source];
+        return row == null || item >= row.length ? 0 : row[item];
+    }
+
+    private void addAt(int source, int item, int delta) {
+        int[] row = rows[source];
+        if (row == null || item >= row.length) {
+            int size = Math.max(16, Integer.highestOneBit(item) << 1);
+            row = row == null ? new int[size] : Arrays.copyOf(row, size);
+            rows[source] = row;
+        }
+        row[item] += delta;
+        totals[item] += delta;
+    }
+
+    private int sourceId(String source) {
+        Integer id = sourceIds.get(source);
+        if (id != null) return id;
+        int s = sourceNames.size();
+        if (s == rows.length) {
+            rows = Arrays.copyOf(rows, s * 2);
+            stamps = Arrays.copyOf(stamps, s * 2);
+        }
+        sourceIds.put(source, s);
+        sourceNames.add(source);
+        return s;
+    }
+
+    private int itemId(String item) {
+        Integer id = itemIds.get(item);
+        if (id != null) return id;
+        int i = itemNames.size();
+        if (i == totals.length) totals = Arrays.copyOf(totals, i * 2);
+        itemIds.put(item, i);
+        itemNames.add(item);
+        return i;
+    }
+}
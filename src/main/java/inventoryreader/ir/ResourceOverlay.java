@@ -0,0 +1,64 @@
+package inventoryreader.ir;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Copy-on-write view of resource amounts for planning and what-if simulations.
+ *
+ * Reads fall through to an immutable base snapshot (shared by every overlay and fork
+ * made from it); writes only go into a small local map. Creating, forking and diffing
+ * an overlay therefore costs O(items touched), not O(all resources).
+ *
+ * Not thread-safe; give each simulation its own overlay via {@link #fork()}.
+ */
+public final class ResourceOverlay {
+    private final Map<String, Integer> base;
+    private final Map<String, Integer> local;
+
+    public ResourceOverlay(Map<String, Integer> base) {
+        this(base, new HashMap<>());
+    }
+
+    private ResourceOverlay(Map<String, Integer> base, Map<String, Integer> local) {
+        this.base = base == null ? Collections.emptyMap() : base;
+        this.local = local;
+    }
+
+    public int get(String name) {
+        Integer v = local.get(name);
+        if (v != null) return v;
+        Integer b = base.get(name);
+        return b == null ? 0 : b;
+    }
+
+    public void set(String name, int amount) {
+        local.put(name, amount);
+    }
+
+    public void add(String name, int delta) {
+        local.put(name, get(name) + delta);
+    }
+
+    /** Independent overlay over the same base, starting from this overlay's current values. */
+    public ResourceOverlay fork() {
+        return new ResourceOverlay(base, new HashMap<>(local));
+    }
+
+    public int touchedCount() {
+        return local.size();
+    }
+
+    /** Net change per touched item relative to the base snapshot; unchanged items are omitted. */
+    public Map<String, Integer> deltas() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : local.entrySet()) {
+            Integer b = base.get(e.getKey());
+            int d = e.getValue() - (b == null ? 0 : b);
+            if (d != 0) out.put(e.getKey(), d);
+        }
+        return out;
+    }
+}
@@ -2,6 +2,7 @@ package inventoryreader.ir;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import inventoryreader.ir.recipes.RecipeGraph;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -11,15 +12,32 @@ import java.util.Map;
 import java.util.LinkedHashMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.List;
 import java.util.Collections;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ResourcesManager {
 
     private static final ResourcesManager INSTANCE = new ResourcesManager();
     private static final File resourcesFile = FilePathManager.getResourcesFile();
     private static final Object RES_FILE_LOCK = new Object();
-    private final Map<String, Integer> pendingChanges = new LinkedHashMap<>();
+    /** Source for deltas not tied to a place, such as manual edits and crafts. */
+    public static final String UNTRACKED = "Untracked";
+    public static final String SOURCE_INVENTORY = "Inventory";
+    public static final String SOURCE_SACKS = "Sacks";
+    // Deltas that arrived before resource names were seeded, by source
+    private final Map<String, Map<String, Integer>> pendingChanges = new LinkedHashMap<>();
+    // Loaded on first use, under RES_FILE_LOCK
+    private volatile ResourceLedger ledger = null;
+    // Sources the ledger took from a reader snapshot that saveData has not attributed to since; under RES_FILE_LOCK
+    private final Set<String> seededSources = new HashSet<>();
+    // Bumped on every write to resources.json so derived caches can tell when they are stale
+    private final AtomicLong version = new AtomicLong();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = null;
 
     private ResourcesManager() {}
 
@@ -27,23 +45,64 @@ public class ResourcesManager {
         return INSTANCE;
     }
 
-    private void directSave(Map<String, Integer> resources) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        synchronized (RES_FILE_LOCK) {
-            atomicWriteJson(resourcesFile, gson.toJson(resources));
+    public long getVersion() {
+        return version.get();
+    }
+
+    /** For code that rewrites or deletes resources.json outside this class. */
+    public void markChanged() {
+        version.incrementAndGet();
+        fireChanged();
+    }
+
+    /**
+     * Registers a callback run after every change to the stored resources. Listeners are
+     * called on whichever thread made the change, so they should only hand work off.
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                InventoryReader.LOGGER.error("Resource change listener failed", e);
+            }
         }
     }
 
     public void saveData(Map<String, Integer> data) {
+        saveData(UNTRACKED, data);
+    }
+
+    /**
+     * Applies item deltas seen in {@code source} (a container title, or one of the
+     * {@code SOURCE_} constants) and attributes them to it in the per-source ledger.
+     */
+    public void saveData(String source, Map<String, Integer> data) {
         if (!FilePathManager.areResourceNamesSeeded()) {
             synchronized (pendingChanges) {
-                mergeInto(pendingChanges, data);
+                mergeInto(pendingChanges.computeIfAbsent(source, k -> new LinkedHashMap<>()), data);
             }
             return;
         }
 
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        boolean changed = false;
         synchronized (RES_FILE_LOCK) {
+            Map<String, Map<String, Integer>> toApply = new LinkedHashMap<>();
+            synchronized (pendingChanges) {
+                pendingChanges.forEach((k, v) -> toApply.put(k, new LinkedHashMap<>(v)));
+                pendingChanges.clear();
+            }
+            mergeInto(toApply.computeIfAbsent(source, k -> new LinkedHashMap<>()), data);
+            toApply.values().forEach(deltas -> deltas.values().removeIf(v -> v == 0));
+            toApply.values().removeIf(Map::isEmpty);
+            // The inventory scan calls this every other tick; skip the read/write when nothing moved
+            if (toApply.isEmpty()) return;
+
             Map<String, Integer> resources = new java.util.LinkedHashMap<>();
             Type type = new TypeToken<Map<String, Integer>>(){}.getType();
             try (FileReader reader = new FileReader(resourcesFile)) {
@@ -58,28 +117,215 @@ public class ResourcesManager {
                 String k = e.getKey();
                 return k == null || k.trim().isEmpty() || k.trim().matches("\\d+");
             });
-            Map<String, Integer> toApply = new LinkedHashMap<>();
-            synchronized (pendingChanges) {
-                if (!pendingChanges.isEmpty()) {
-                    toApply.putAll(pendingChanges);
-                    pendingChanges.clear();
+            ResourceLedger sources = ledger(resources);
+            boolean attributed = false;
+            for (Map.Entry<String, Map<String, Integer>> e : toApply.entrySet()) {
+                Map<String, Integer> applied = applyDeltas(resources, e.getValue());
+                if (applied.isEmpty()) continue;
+                changed = true;
+                String from = e.getKey();
+                if (UNTRACKED.equals(from)) continue;
+                if (seededSources.remove(from)) {
+                    // The seed may or may not hold these deltas already; the snapshot always does
+                    sources.add(from, catchUp(sources.contentsOf(from), resolveAll(resources, readerSnapshot(from))));
+                } else {
+                    sources.add(from, applied);
+                }
+                attributed = true;
+            }
+            if (changed) {
+                atomicWriteJson(resourcesFile, gson.toJson(resources));
+                version.incrementAndGet();
+            }
+            if (attributed) {
+                atomicWriteJson(FilePathManager.RESOURCE_SOURCES_JSON, gson.toJson(sources.toMap()));
+            }
+        }
+        if (changed) fireChanged();
+    }
+
+    /**
+     * Where {@code name} is held: the count in each tracked source, plus {@link #UNTRACKED}
+     * for whatever the stored total has beyond their sum.
+     */
+    public Map<String, Integer> getSources(String name) {
+        ResourceLedger current = loadedLedger();
+        Map<String, Integer> result = current.sourcesOf(name);
+        long untracked = getSnapshot().getOrDefault(name, 0) - current.total(name);
+        if (untracked != 0) result.put(UNTRACKED, (int) untracked);
+        return result;
+    }
+
+    /** Counts last attributed to {@code source}, keyed by resource name. */
+    public Map<String, Integer> getSourceContents(String source) {
+        return loadedLedger().contentsOf(source);
+    }
+
+    /** Change counters of every tracked source; see {@link #applyCorrections}. */
+    public Map<String, Long> getSourceStamps() {
+        return loadedLedger().stamps();
+    }
+
+    /**
+     * Maps raw item names to the resources they count towards in {@code resources} (a
+     * {@link #getSnapshot} the caller already holds), as saveData does; others are dropped.
+     */
+    public Map<String, Integer> resolveNames(Map<String, Integer> resources, Map<String, Integer> counts) {
+        return resolveAll(resources, counts);
+    }
+
+    /**
+     * Adds per-source count corrections (keyed by resource name) to the ledger. A source
+     * whose stamp differs from {@code stamps} changed after the corrections were worked out
+     * and is skipped. Only the ledger is known to be off, so a correction that lowers a
+     * source leaves the stored total alone and the difference shows up as untracked. A total
+     * is only raised where the corrected sources now hold more than resources.json does,
+     * i.e. where the stored total itself disagrees with the snapshots. Returns the sources
+     * that were corrected.
+     */
+    public List<String> applyCorrections(Map<String, Map<String, Integer>> corrections, Map<String, Long> stamps) {
+        List<String> corrected = new ArrayList<>();
+        boolean totalsChanged = false;
+        synchronized (RES_FILE_LOCK) {
+            Map<String, Integer> resources = new LinkedHashMap<>(getSnapshot());
+            ResourceLedger sources = ledger(resources);
+            Set<String> raised = new HashSet<>();
+            long lowered = 0;
+            for (Map.Entry<String, Map<String, Integer>> e : corrections.entrySet()) {
+                String source = e.getKey();
+                if (sources.stamp(source) != stamps.getOrDefault(source, 0L)) continue;
+                for (Map.Entry<String, Integer> item : e.getValue().entrySet()) {
+                    if (item.getValue() > 0) raised.add(item.getKey());
+                    else lowered -= item.getValue();
+                }
+                sources.add(source, e.getValue());
+                corrected.add(source);
+            }
+            if (corrected.isEmpty()) return corrected;
+            // Raises come out of the untracked remainder first; only a shortfall lifts the total
+            for (String name : raised) {
+                long tracked = sources.total(name);
+                if (tracked > resources.getOrDefault(name, 0)) {
+                    resources.put(name, (int) tracked);
+                    totalsChanged = true;
                 }
             }
-            mergeInto(toApply, data);
-            applyDeltas(resources, toApply);
-            atomicWriteJson(resourcesFile, gson.toJson(resources));
+            IrMetrics.add("reconcile.moved_to_untracked", lowered);
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            if (totalsChanged) {
+                atomicWriteJson(resourcesFile, gson.toJson(resources));
+                version.incrementAndGet();
+            }
+            atomicWriteJson(FilePathManager.RESOURCE_SOURCES_JSON, gson.toJson(sources.toMap()));
+        }
+        if (totalsChanged) fireChanged();
+        return corrected;
+    }
+
+    private ResourceLedger loadedLedger() {
+        ResourceLedger current = ledger;
+        if (current != null) return current;
+        synchronized (RES_FILE_LOCK) {
+            return ledger(getSnapshot());
+        }
+    }
+
+    /** Drops the in-memory ledger after its file was deleted; it is rebuilt on next use. */
+    public void clearSources() {
+        synchronized (RES_FILE_LOCK) {
+            ledger = null;
+            seededSources.clear();
+        }
+    }
+
+    // Caller holds RES_FILE_LOCK
+    private ResourceLedger ledger(Map<String, Integer> resources) {
+        ResourceLedger current = ledger;
+        return current != null ? current : loadLedger(resources);
+    }
+
+    /**
+     * Builds the ledger from resource_sources.json or, on first run, from the snapshots the
+     * readers keep, whichever caller gets there first. Sources taken from a snapshot go into
+     * seededSources: readers write their snapshot before passing its deltas to saveData, so a
+     * delta still on its way in may already be counted. saveData resyncs such a source from
+     * its snapshot the first time it sees it instead of adding the delta. Caller holds
+     * RES_FILE_LOCK.
+     */
+    private ResourceLedger loadLedger(Map<String, Integer> resources) {
+        ResourceLedger current = new ResourceLedger();
+        Map<String, Map<String, Integer>> stored = readSourceFile(FilePathManager.RESOURCE_SOURCES_JSON);
+        if (!stored.isEmpty()) {
+            stored.forEach(current::add);
+        } else {
+            // First run with per-source tracking: start from the snapshots the readers already keep
+            for (Map.Entry<String, Map<String, Integer>> e : readSourceFile(StorageReader.DATA_FILE).entrySet()) {
+                current.add(e.getKey(), resolveAll(resources, e.getValue()));
+                seededSources.add(e.getKey());
+            }
+            Map<String, Integer> inventory = readSourceFile(InventoryReaderClient.DATA_FILE).get(InventoryReaderClient.INVENTORY_TITLE);
+            if (inventory != null) {
+                current.add(SOURCE_INVENTORY, resolveAll(resources, inventory));
+                seededSources.add(SOURCE_INVENTORY);
+            }
+            if (!current.isEmpty()) {
+                atomicWriteJson(FilePathManager.RESOURCE_SOURCES_JSON, new Gson().toJson(current.toMap()));
+            }
+        }
+        ledger = current;
+        return current;
+    }
+
+    /** The reader snapshot a seeded source was taken from, as raw item names; empty if gone. */
+    private Map<String, Integer> readerSnapshot(String source) {
+        Map<String, Integer> contents = SOURCE_INVENTORY.equals(source)
+            ? readSourceFile(InventoryReaderClient.DATA_FILE).get(InventoryReaderClient.INVENTORY_TITLE)
+            : readSourceFile(StorageReader.DATA_FILE).get(source);
+        return contents != null ? contents : new LinkedHashMap<>();
+    }
+
+    /** Deltas that take {@code have} to {@code want}. */
+    private static Map<String, Integer> catchUp(Map<String, Integer> have, Map<String, Integer> want) {
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : want.entrySet()) {
+            int delta = e.getValue() - have.getOrDefault(e.getKey(), 0);
+            if (delta != 0) deltas.put(e.getKey(), delta);
+        }
+        for (Map.Entry<String, Integer> e : have.entrySet()) {
+            if (!want.containsKey(e.getKey())) deltas.put(e.getKey(), -e.getValue());
+        }
+        return deltas;
+    }
+
+    /** Reads a title -> item -> count file such as allcontainerData.json; empty if unreadable. */
+    Map<String, Map<String, Integer>> readSourceFile(File file) {
+        if (!file.exists() || file.length() == 0) return new LinkedHashMap<>();
+        try (FileReader reader = new FileReader(file)) {
+            Type type = new TypeToken<Map<String, Map<String, Integer>>>(){}.getType();
+            Map<String, Map<String, Integer>> data = new Gson().fromJson(reader, type);
+            return data != null ? data : new LinkedHashMap<>();
+        } catch (IOException | com.google.gson.JsonSyntaxException e) {
+            InventoryReader.LOGGER.warn("Failed to read {}: {}", file.getName(), e.toString());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private Map<String, Integer> resolveAll(Map<String, Integer> resources, Map<String, Integer> counts) {
+        Map<String, Integer> resolved = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            String key = resolveKey(resources, e.getKey());
+            if (key != null && e.getValue() != null) resolved.merge(key, e.getValue(), Integer::sum);
         }
+        return resolved;
     }
 
     public boolean flushPendingIfReady() {
         if (!FilePathManager.areResourceNamesSeeded()) return false;
-        Map<String, Integer> snapshot;
         synchronized (pendingChanges) {
             if (pendingChanges.isEmpty()) return true;
-            snapshot = new LinkedHashMap<>(pendingChanges);
-            pendingChanges.clear();
         }
-        saveData(snapshot);
+        // saveData drains everything pending along with the (empty) new delta
+        saveData(UNTRACKED, Collections.emptyMap());
         return true;
     }
 
@@ -93,26 +339,38 @@ public class ResourcesManager {
         }
     }
 
-    private void applyDeltas(Map<String, Integer> resources, Map<String, Integer> delta) {
+    /** Adds {@code delta} to {@code resources}; returns what was applied, keyed by resource name. */
+    private Map<String, Integer> applyDeltas(Map<String, Integer> resources, Map<String, Integer> delta) {
+        Map<String, Integer> applied = new LinkedHashMap<>();
         for (Map.Entry<String, Integer> e : delta.entrySet()) {
-            String cleaned = cleanItemName(e.getKey());
-            if (cleaned.isEmpty()) {
+            String targetKey = resolveKey(resources, e.getKey());
+            if (targetKey == null) {
                 continue;
             }
-            String targetKey = cleaned;
             int value = e.getValue();
-            if (resources.containsKey(targetKey)) {
-                resources.put(targetKey, resources.get(targetKey) + value);
-                continue;
-            }
-            String[] itemSplit = cleaned.split(" ");
-            if (itemSplit.length > 1) {
-                String itemRefined = String.join(" ", Arrays.copyOfRange(itemSplit, 1, itemSplit.length)).trim();
-                if (!itemRefined.trim().matches("\\d+") && resources.containsKey(itemRefined)) {
-                    resources.put(itemRefined, resources.get(itemRefined) + value);
-                }
+            resources.put(targetKey, resources.get(targetKey) + value);
+            applied.merge(targetKey, value, Integer::sum);
+        }
+        return applied;
+    }
+
+    /** The resource an item name counts towards, or null if it isn't a tracked resource. */
+    private String resolveKey(Map<String, Integer> resources, String raw) {
+        String cleaned = cleanItemName(raw);
+        if (cleaned.isEmpty()) {
+            return null;
+        }
+        if (resources.containsKey(cleaned)) {
+            return cleaned;
+        }
+        String[] itemSplit = cleaned.split(" ");
+        if (itemSplit.length > 1) {
+            String itemRefined = String.join(" ", Arrays.copyOfRange(itemSplit, 1, itemSplit.length)).trim();
+            if (!itemRefined.trim().matches("\\d+") && resources.containsKey(itemRefined)) {
+                return itemRefined;
             }
         }
+        return null;
     }
 
     private String cleanItemName(String raw) {
@@ -128,27 +386,53 @@ public class ResourcesManager {
                   .trim();
     }
 
+    /** Mutable copy of all resources; prefer {@link #getSnapshot()} for read-only use. */
     public Map<String, Integer> getAllResources() {
+        return new LinkedHashMap<>(getSnapshot());
+    }
+
+    /**
+     * Immutable view of all resources, re-read from disk only after the version changes.
+     * Shared between callers, so it is cheap to use as the base of a {@link ResourceOverlay}.
+     */
+    public Map<String, Integer> getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.version == version.get()) return current.resources;
         synchronized (RES_FILE_LOCK) {
-            Gson gson = new Gson();
-            if (!resourcesFile.exists() || resourcesFile.length() == 0) {
-                return new LinkedHashMap<>();
-            }
-            try (FileReader reader = new FileReader(resourcesFile)) {
-                Type type = new TypeToken<Map<String, Integer>>(){}.getType();
-                Map<String, Integer> resources = gson.fromJson(reader, type);
-                if (resources != null) {
-                    return new LinkedHashMap<>(resources);
-                }
-            } catch (IOException | com.google.gson.JsonSyntaxException e) {
-                // On parse error, return empty snapshot
-            }
+            // Writers bump the version while holding this lock, so the file matches it here
+            long v = version.get();
+            current = snapshot;
+            if (current != null && current.version == v) return current.resources;
+            current = new Snapshot(v, Collections.unmodifiableMap(readResourcesFile()));
+            snapshot = current;
+            return current.resources;
+        }
+    }
+
+    private Map<String, Integer> readResourcesFile() {
+        Gson gson = new Gson();
+        if (!resourcesFile.exists() || resourcesFile.length() == 0) {
             return new LinkedHashMap<>();
         }
+        try (FileReader reader = new FileReader(resourcesFile)) {
+            Type type = new TypeToken<Map<String, Integer>>(){}.getType();
+            Map<String, Integer> resources = gson.fromJson(reader, type);
+            if (resources != null) {
+                return new LinkedHashMap<>(resources);
+            }
+        } catch (IOException | com.google.gson.JsonSyntaxException e) {
+            // On parse error, return empty snapshot
+        }
+        return new LinkedHashMap<>();
+    }
+
+    /** Copy-on-write overlay over the current snapshot, for plans and what-if simulations. */
+    public ResourceOverlay newOverlay() {
+        return new ResourceOverlay(getSnapshot());
     }
 
     // Write JSON via a temp file then atomically move into place to avoid partial reads
-    private void atomicWriteJson(File target, String json) {
+    static void atomicWriteJson(File target, String json) {
         try {
             File dir = target.getParentFile();
             if (dir != null && !dir.exists()) dir.mkdirs();
@@ -186,42 +470,56 @@ public class ResourcesManager {
     }
 
     public Integer getResourceByName(String name) {
-        Map<String, Integer> resources = getAllResources();
-        return resources.getOrDefault(name, 0);
+        return getSnapshot().getOrDefault(name, 0);
     }
 
     public void setResourceAmount(String name, int amount) {
-        Map<String, Integer> resources = getAllResources();
-        resources.put(name, amount);
-        directSave(resources);
+        edit().set(name, amount).commit();
+    }
+
+    /** Starts a batch of edits that is applied with one write and one version bump on commit. */
+    public Transaction edit() {
+        return new Transaction();
     }
 
     public void craft(String name, int amt) {
-        RecipeManager rm = RecipeManager.getInstance();
-        Map<String, Map<String, Integer>> forging = rm.getAllRecipes();
-        Map<String, Integer> myResources = getAllResources();
-        myResources.put(name, myResources.getOrDefault(name, 0) + amt);
-        for (Map.Entry<String, Integer> entry : forging.get(name).entrySet()) {
-            craftItem(entry.getKey(), entry.getValue() * amt, forging, myResources);
+        ResourceOverlay result = simulateCraft(name, amt, newOverlay());
+        if (result != null) {
+            edit().addAll(result.deltas()).commit();
         }
-        saveData(myResources);
+    }
+
+    /**
+     * Applies crafting {@code amt} of {@code name} to {@code overlay} (consuming stock first,
+     * crafting missing intermediates) and returns it, or null if there is no such recipe.
+     * Nothing is persisted; fork the overlay first to keep the original.
+     */
+    public ResourceOverlay simulateCraft(String name, int amt, ResourceOverlay overlay) {
+        Map<String, Map<String, Integer>> forging = RecipeManager.getInstance().getRecipeMap();
+        Map<String, Integer> recipe = forging.get(name);
+        if (recipe == null) return null;
+        overlay.add(name, amt);
+        for (Map.Entry<String, Integer> entry : recipe.entrySet()) {
+            craftItem(entry.getKey(), entry.getValue() * amt, forging, overlay);
+        }
+        return overlay;
     }
     
-    private void craftItem(String currentItem, int multiplier, Map<String, Map<String, Integer>> forging, Map<String, Integer> myResources) {
+    private void craftItem(String currentItem, int multiplier, Map<String, Map<String, Integer>> forging, ResourceOverlay myResources) {
         if (forging.containsKey(currentItem)) {
-            int available = myResources.getOrDefault(currentItem, 0);
+            int available = myResources.get(currentItem);
             if (available < multiplier) {
                 int remaining = multiplier - available;
-                myResources.put(currentItem, 0);
+                myResources.set(currentItem, 0);
                 for (Map.Entry<String, Integer> entry : forging.get(currentItem).entrySet()) {
                     craftItem(entry.getKey(), entry.getValue() * remaining, forging, myResources);
                 }
             } else {
-                myResources.put(currentItem, available - multiplier);
+                myResources.set(currentItem, available - multiplier);
             }
         } else {
-            int current = myResources.getOrDefault(currentItem, 0);
-            myResources.put(currentItem, Math.max(0, current - multiplier));
+            int current = myResources.get(currentItem);
+            myResources.set(currentItem, Math.max(0, current - multiplier));
         }
     }
     
@@ -229,39 +527,36 @@ public class ResourcesManager {
         craft(name, amt);
     }
 
+    /**
+     * Raw materials still missing to craft {@code amt} of {@code name}, ignoring any
+     * intermediate items already in stock. Uses the precomputed flattened bill of
+     * materials, so this is one scaled subtraction per raw ingredient.
+     */
     public Map<String, Integer> getSimpleRemainingIngredients(String name, int amt) {
-        Map<String, Integer> resources = getAllResources();
+        Map<String, Integer> resources = getSnapshot();
+        RecipeGraph graph = RecipeManager.getInstance().getRecipeGraph();
         Map<String, Integer> needed = new LinkedHashMap<>();
-        calculateNeeded(name, amt, resources, needed);
-        return needed;
-    }
-
-    private void calculateNeeded(String name, int amt, Map<String, Integer> resources, Map<String, Integer> needed) {
-        RecipeManager rm = RecipeManager.getInstance();
-        if (!rm.getAllRecipes().containsKey(name)) {
+        int id = graph.idOf(name);
+        if (id < 0) {
             int have = resources.getOrDefault(name, 0);
-            if (have < amt) {
-                needed.put(name, amt - have);
-            }
-            return;
+            if (have < amt) needed.put(name, amt - have);
+            return needed;
         }
-        Map<String, Integer> recipe = rm.getAllRecipes().get(name);
-        for (Map.Entry<String, Integer> entry : recipe.entrySet()) {
-            String ingredient = entry.getKey();
-            int required = entry.getValue() * amt;
-            int have = resources.getOrDefault(ingredient, 0);
-            if (rm.getAllRecipes().containsKey(ingredient)) {
-                calculateNeeded(ingredient, required, resources, needed);
-            } else {
-                if (have < required) {
-                    needed.put(ingredient, needed.getOrDefault(ingredient, 0) + (required - have));
-                }
+        int[] rawIds = graph.bomIds(id);
+        long[] perUnit = graph.bomAmounts(id);
+        for (int i = 0; i < rawIds.length; i++) {
+            String raw = graph.nameOf(rawIds[i]);
+            long required = perUnit[i] >= Long.MAX_VALUE / Math.max(1, amt) ? Long.MAX_VALUE : perUnit[i] * amt;
+            long missing = required - resources.getOrDefault(raw, 0);
+            if (missing > 0) {
+                needed.put(raw, (int) Math.min(Integer.MAX_VALUE, missing));
             }
         }
+        return needed;
     }
 
     public List<ResourceEntry> getAllResourceEntries() {
-        Map<String, Integer> map = getAllResources();
+        Map<String, Integer> map = getSnapshot();
         List<ResourceEntry> list = new ArrayList<>();
         for (Map.Entry<String, Integer> entry : map.entrySet()) {
             if (entry.getValue() > 0) {
@@ -272,7 +567,7 @@ public class ResourcesManager {
     }
     
     public List<ResourceEntry> getAllResourceEntriesIncludingZero() {
-        Map<String, Integer> map = getAllResources();
+        Map<String, Integer> map = getSnapshot();
         List<ResourceEntry> list = new ArrayList<>();
         for (Map.Entry<String, Integer> entry : map.entrySet()) {
             list.add(new ResourceEntry(entry.getKey(), entry.getValue()));
@@ -282,30 +577,33 @@ public class ResourcesManager {
     }
 
     public RemainingResponse getRemainingIngredients(String name, int amt) {
-        RecipeManager rm = RecipeManager.getInstance();
-        Map<String, Map<String, Integer>> forging = rm.getAllRecipes();
-        Map<String, Integer> highestPossibleResources = getAllResources();
-        Map<String, Integer> currentAvailableResources = new LinkedHashMap<>(highestPossibleResources);
+        return getRemainingIngredients(name, amt, newOverlay());
+    }
+
+    /** Plans against {@code start} (e.g. a simulated state) without modifying it. */
+    public RemainingResponse getRemainingIngredients(String name, int amt, ResourceOverlay start) {
+        Map<String, Map<String, Integer>> forging = RecipeManager.getInstance().getRecipeMap();
+        // Both working views share the base snapshot; only items the plan touches get copied
+        ResourceOverlay highestPossibleResources = start.fork();
+        ResourceOverlay currentAvailableResources = start.fork();
         Map<String, Integer> messages = new LinkedHashMap<>();
         
-        // Initialize resources with default values to avoid null pointer exceptions
-        initializeResourceMaps(name, forging, highestPossibleResources, currentAvailableResources, new java.util.HashSet<>());
-        
-        int old = highestPossibleResources.getOrDefault(name, 0);
+        int old = highestPossibleResources.get(name);
         buildRecipe(name, amt, forging, highestPossibleResources, currentAvailableResources, messages);
-        int updated = highestPossibleResources.getOrDefault(name, 0);
+        int updated = highestPossibleResources.get(name);
         
-        RecipeNode fullRecipe;
+        RequiredTrace trace = new RequiredTrace(forging);
         if (updated - old >= amt) {
-            fullRecipe = expandRequiredRecipe(name, (updated-old)-amt, forging, highestPossibleResources);
+            traceRequiredRecipe(name, (updated-old)-amt, forging, highestPossibleResources, trace);
         } else {
-            fullRecipe = expandRequiredRecipe(name, amt-(updated-old), forging, highestPossibleResources);
+            traceRequiredRecipe(name, amt-(updated-old), forging, highestPossibleResources, trace);
         }
-        return new RemainingResponse(name, fullRecipe, messages);
+        IrMetrics.add("tree.nodes.traced", trace.size);
+        return new RemainingResponse(name, trace.node(name, 0), messages);
     }
 
     private void buildRecipe(String currentItem, int multiplier, Map<String, Map<String, Integer>> forging, 
-                            Map<String, Integer> highestPossibleResources, Map<String, Integer> currentAvailableResources, 
+                            ResourceOverlay highestPossibleResources, ResourceOverlay currentAvailableResources, 
                             Map<String, Integer> messages) {
         Map<String, Integer> recipe = forging.get(currentItem);
         Map<String, Integer> madeResources = new LinkedHashMap<>();
@@ -314,14 +612,14 @@ public class ResourcesManager {
             String item = entry.getKey();
             int quantity = entry.getValue();
             if (forging.containsKey(item)) {
-                int need = Math.max(0, (quantity * multiplier) - currentAvailableResources.getOrDefault(item, 0));
+                int need = Math.max(0, (quantity * multiplier) - currentAvailableResources.get(item));
                 if (need > 0) {
                     buildRecipe(item, need, forging, highestPossibleResources, currentAvailableResources, messages);
-                    madeResources.put(item, currentAvailableResources.getOrDefault(item, 0));
-                    currentAvailableResources.put(item, 0);
+                    madeResources.put(item, currentAvailableResources.get(item));
+                    currentAvailableResources.set(item, 0);
                 }else{
                     madeResources.put(item, quantity * multiplier);
-                    currentAvailableResources.put(item, currentAvailableResources.getOrDefault(item, 0) - quantity * multiplier);
+                    currentAvailableResources.set(item, currentAvailableResources.get(item) - quantity * multiplier);
                 }
             }
         }
@@ -329,15 +627,15 @@ public class ResourcesManager {
             String item = entry.getKey();
             int quantity = entry.getValue();
             if (quantity > 0) {
-                currentAvailableResources.put(item, 
-                        currentAvailableResources.getOrDefault(item, 0) + quantity);
+                currentAvailableResources.set(item, 
+                        currentAvailableResources.get(item) + quantity);
             }
         }
         check(currentItem, multiplier, forging, highestPossibleResources, currentAvailableResources, messages);
     }
 
     private void check(String currentItem, int multiplier, Map<String, Map<String, Integer>> forging, 
-                       Map<String, Integer> highestPossibleResources, Map<String, Integer> currentAvailableResources, 
+                       ResourceOverlay highestPossibleResources, ResourceOverlay currentAvailableResources, 
                        Map<String, Integer> messages) {
         Map<String, Integer> recipe = forging.get(currentItem);
         if (recipe == null) return;
@@ -348,7 +646,7 @@ public class ResourcesManager {
         for (Map.Entry<String, Integer> entry : recipe.entrySet()) {
             String baseItem = entry.getKey();
             int quantityOfBaseItem = entry.getValue();
-            int possibleItems = currentAvailableResources.getOrDefault(baseItem, 0) / quantityOfBaseItem;
+            int possibleItems = currentAvailableResources.get(baseItem) / quantityOfBaseItem;
             possibleItemsDict.put(baseItem, possibleItems);
             count.add(multiplier - possibleItems);
         }
@@ -358,10 +656,10 @@ public class ResourcesManager {
         
         int amountAbleToCraft = multiplier - maxcount;
         
-        highestPossibleResources.put(currentItem, 
-                                    highestPossibleResources.getOrDefault(currentItem, 0) + amountAbleToCraft);
-        currentAvailableResources.put(currentItem, 
-                                     currentAvailableResources.getOrDefault(currentItem, 0) + amountAbleToCraft);
+        highestPossibleResources.set(currentItem, 
+                                    highestPossibleResources.get(currentItem) + amountAbleToCraft);
+        currentAvailableResources.set(currentItem, 
+                                     currentAvailableResources.get(currentItem) + amountAbleToCraft);
         
         if (amountAbleToCraft > 0) {
             messages.put(currentItem, 
@@ -373,8 +671,8 @@ public class ResourcesManager {
     }
 
     private void allocate(String currentItem, int multiplier, int maxcount, Map<String, Integer> possibleItemsDict,
-                          Map<String, Map<String, Integer>> forging, Map<String, Integer> highestPossibleResources, 
-                          Map<String, Integer> currentAvailableResources) {
+                          Map<String, Map<String, Integer>> forging, ResourceOverlay highestPossibleResources, 
+                          ResourceOverlay currentAvailableResources) {
         Map<String, Integer> recipe = forging.get(currentItem);
         if (recipe == null) return;
         
@@ -383,8 +681,8 @@ public class ResourcesManager {
         for (Map.Entry<String, Integer> entry : recipe.entrySet()) {
             String baseItem = entry.getKey();
             int quantityOfBaseItem = entry.getValue();
-            highestPossibleResources.put(baseItem, 
-                   highestPossibleResources.getOrDefault(baseItem, 0) - 
+            highestPossibleResources.set(baseItem, 
+                   highestPossibleResources.get(baseItem) - 
                    quantityOfBaseItem * amountAbleToCraftOfHigherMaterial);
         }
 
@@ -394,76 +692,182 @@ public class ResourcesManager {
                 int quantityOfBaseItem = entry.getValue();
                 int possibleItems = possibleItemsDict.getOrDefault(baseItem, 0);
                 int amountLeftToAllocate = Math.min(multiplier, possibleItems);
-                currentAvailableResources.put(baseItem, 
-                       currentAvailableResources.getOrDefault(baseItem, 0) - 
+                currentAvailableResources.set(baseItem, 
+                       currentAvailableResources.get(baseItem) - 
                        quantityOfBaseItem * amountLeftToAllocate);
             }
         }
     }
 
-    private RecipeNode expandRequiredRecipe(String currentName, int multiplier, Map<String, Map<String, Integer>> forging, Map<String, Integer> highestPossibleResources) {
-        if (!forging.containsKey(currentName)) {
-            int have = highestPossibleResources.getOrDefault(currentName, 0);
+    /**
+     * Nets the required tree against {@code highestPossibleResources}. The walk depends on
+     * visit order (earlier branches consume what later ones could use), so it runs once here
+     * but only records amounts into {@code trace}; node objects are created from it lazily.
+     */
+    private void traceRequiredRecipe(String currentName, int multiplier, Map<String, Map<String, Integer>> forging, ResourceOverlay highestPossibleResources, RequiredTrace trace) {
+        int at = trace.open();
+        Map<String, Integer> recipe = forging.get(currentName);
+        if (recipe == null) {
+            int have = highestPossibleResources.get(currentName);
             if (have < multiplier) {
-                int temp = have;
-                highestPossibleResources.put(currentName, 0);
-                return new RecipeNode(currentName, multiplier - temp, Collections.emptyList());
+                highestPossibleResources.set(currentName, 0);
+                trace.close(at, multiplier - have);
             } else {
-                highestPossibleResources.put(currentName, have - multiplier);
-                return new RecipeNode(currentName, 0, Collections.emptyList());
+                highestPossibleResources.set(currentName, have - multiplier);
+                trace.close(at, 0);
             }
-        } else {
-            List<RecipeNode> ingredients = new ArrayList<>();
-            for (Map.Entry<String, Integer> entry : forging.get(currentName).entrySet()) {
-                String item = entry.getKey();
-                int qty = entry.getValue();
-                if (forging.containsKey(item)) {
-                    if (highestPossibleResources.getOrDefault(item, 0) < qty * multiplier) {
-                        RecipeNode expanded = expandRequiredRecipe(item, 
-                                             (qty * multiplier) - highestPossibleResources.getOrDefault(item, 0), 
-                                             forging, highestPossibleResources);
-                        ingredients.add(expanded);
-                        highestPossibleResources.put(item, 0);
-                    } else {
-                        highestPossibleResources.put(item, highestPossibleResources.getOrDefault(item, 0) - qty * multiplier);
-                        RecipeNode expanded = expandRequiredRecipe(item, 0, forging, highestPossibleResources);
-                        ingredients.add(expanded);
-                    }
+            return;
+        }
+        for (Map.Entry<String, Integer> entry : recipe.entrySet()) {
+            String item = entry.getKey();
+            int needed = entry.getValue() * multiplier;
+            int have = highestPossibleResources.get(item);
+            if (forging.containsKey(item)) {
+                if (have < needed) {
+                    traceRequiredRecipe(item, needed - have, forging, highestPossibleResources, trace);
+                    highestPossibleResources.set(item, 0);
                 } else {
-                    if (highestPossibleResources.getOrDefault(item, 0) < qty * multiplier) {
-                        RecipeNode expanded = expandRequiredRecipe(item, qty * multiplier, forging, highestPossibleResources);
-                        ingredients.add(expanded);
-                    } else {
-                        highestPossibleResources.put(item, highestPossibleResources.getOrDefault(item, 0) - qty * multiplier);
-                        RecipeNode expanded = expandRequiredRecipe(item, 0, forging, highestPossibleResources);
-                        ingredients.add(expanded);
-                    }
+                    highestPossibleResources.set(item, have - needed);
+                    traceRequiredRecipe(item, 0, forging, highestPossibleResources, trace);
+                }
+            } else {
+                if (have < needed) {
+                    traceRequiredRecipe(item, needed, forging, highestPossibleResources, trace);
+                } else {
+                    highestPossibleResources.set(item, have - needed);
+                    traceRequiredRecipe(item, 0, forging, highestPossibleResources, trace);
                 }
             }
-            return new RecipeNode(currentName, multiplier, ingredients);
         }
+        trace.close(at, multiplier);
     }
 
-    private void initializeResourceMaps(String targetItem, Map<String, Map<String, Integer>> forging, 
-                                       Map<String, Integer> highestPossibleResources,
-                                       Map<String, Integer> currentAvailableResources,
-                                       java.util.Set<String> visited) {
-        if (!visited.add(targetItem)) {
-            return; // already visited — break the cycle
+    /**
+     * Netted amounts of a required tree in depth-first order. {@code next[i]} is the index
+     * just past node i's subtree, i.e. its next sibling, which is all that's needed to find
+     * the children of any node.
+     */
+    private static final class RequiredTrace {
+        private final Map<String, Map<String, Integer>> forging;
+        private int[] amounts = new int[64];
+        private int[] next = new int[64];
+        private int size;
+
+        RequiredTrace(Map<String, Map<String, Integer>> forging) {
+            this.forging = forging;
         }
-        highestPossibleResources.putIfAbsent(targetItem, 0);
-        currentAvailableResources.putIfAbsent(targetItem, 0);
-        
-        if (forging.containsKey(targetItem)) {
-            Map<String, Integer> recipe = forging.get(targetItem);
-            for (String ingredient : recipe.keySet()) {
-                highestPossibleResources.putIfAbsent(ingredient, 0);
-                currentAvailableResources.putIfAbsent(ingredient, 0);
-                
-                if (forging.containsKey(ingredient)) {
-                    initializeResourceMaps(ingredient, forging, highestPossibleResources, currentAvailableResources, visited);
+
+        int open() {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+                next = Arrays.copyOf(next, size * 2);
+            }
+            return size++;
+        }
+
+        void close(int at, int amount) {
+            amounts[at] = amount;
+            next[at] = size;
+        }
+
+        RecipeManager.RecipeNode node(String name, int at) {
+            Map<String, Integer> recipe = forging.get(name);
+            if (recipe == null || recipe.isEmpty()) {
+                return new RecipeManager.RecipeNode(name, amounts[at], Collections.emptyList());
+            }
+            return new RecipeManager.RecipeNode(name, amounts[at], () -> {
+                List<RecipeManager.RecipeNode> children = new ArrayList<>(recipe.size());
+                int child = at + 1;
+                for (String item : recipe.keySet()) {
+                    children.add(node(item, child));
+                    child = next[child];
+                }
+                return children;
+            });
+        }
+    }
+
+    /**
+     * Batch of absolute sets and relative adds against resources.json. Edits to the same
+     * item combine in call order (set then add adds to the set value). Nothing is read or
+     * written until {@link #commit()}, which applies everything under the file lock.
+     */
+    public class Transaction {
+        private final Map<String, Edit> edits = new LinkedHashMap<>();
+
+        private Transaction() {}
+
+        public Transaction set(String name, int amount) {
+            if (name != null) edits.put(name, new Edit(true, amount));
+            return this;
+        }
+
+        public Transaction add(String name, int delta) {
+            if (name == null || delta == 0) return this;
+            Edit e = edits.get(name);
+            if (e == null) edits.put(name, new Edit(false, delta));
+            else e.value += delta;
+            return this;
+        }
+
+        public Transaction addAll(Map<String, Integer> deltas) {
+            if (deltas != null) {
+                for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+                    add(e.getKey(), e.getValue() == null ? 0 : e.getValue());
+                }
+            }
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return edits.isEmpty();
+        }
+
+        /** Applies all edits; returns false if they left the stored resources unchanged. */
+        public boolean commit() {
+            if (edits.isEmpty()) return false;
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            synchronized (RES_FILE_LOCK) {
+                Map<String, Integer> resources = new LinkedHashMap<>(getSnapshot());
+                boolean changed = false;
+                for (Map.Entry<String, Edit> e : edits.entrySet()) {
+                    String name = e.getKey();
+                    Edit edit = e.getValue();
+                    Integer old = resources.get(name);
+                    int current = old == null ? 0 : old;
+                    int updated = edit.absolute ? edit.value : current + edit.value;
+                    if (old == null || updated != current) {
+                        resources.put(name, updated);
+                        changed = true;
+                    }
                 }
+                edits.clear();
+                if (!changed) return false;
+                atomicWriteJson(resourcesFile, gson.toJson(resources));
+                version.incrementAndGet();
             }
+            fireChanged();
+            return true;
+        }
+    }
+
+    private static final class Edit {
+        final boolean absolute;
+        int value;
+
+        Edit(boolean absolute, int value) {
+            this.absolute = absolute;
+            this.value = value;
+        }
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final Map<String, Integer> resources;
+
+        Snapshot(long version, Map<String, Integer> resources) {
+            this.version = version;
+            this.resources = resources;
         }
     }
 
@@ -478,25 +882,13 @@ public class ResourcesManager {
 
     public static class RemainingResponse {
         public String name;
-        public RecipeNode full_recipe;
+        public RecipeManager.RecipeNode full_recipe;
         public Map<String, Integer> messages;
 
-        public RemainingResponse(String name, RecipeNode fullRecipe, Map<String, Integer> messages) {
+        public RemainingResponse(String name, RecipeManager.RecipeNode fullRecipe, Map<String, Integer> messages) {
             this.name = name;
             this.full_recipe = fullRecipe;
             this.messages = messages;
         }
     }
-
-    public static class RecipeNode {
-        public String name;
-        public int amount;
-        public java.util.List<RecipeNode> ingredients;
-        
-        public RecipeNode(String name, int amount, java.util.List<RecipeNode> ingredients) {
-            this.name = name;
-            this.amount = amount;
-            this.ingredients = ingredients;
-        }
-    }
 }
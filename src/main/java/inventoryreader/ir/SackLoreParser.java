@@ -0,0 +1,169 @@
+package inventoryreader.ir;
+
+/**
+ * Reads sack contents out of item lore lines in a single pass over the characters.
+ *
+ * Replaces the split/replace/parseInt chains SackReader used, which allocated several
+ * strings and arrays per lore line. Thousands separators are skipped while the digits are
+ * accumulated. Malformed numbers are reported as -1 instead of throwing, so one odd line
+ * no longer aborts reading the rest of the sack. Lines that still carry legacy {@code §}
+ * colour codes are stripped of them first; plain lines are read without copying.
+ */
+final class SackLoreParser {
+    /** Gemstone rarity tiers in the order Hypixel lists them. */
+    static final String[] GEMSTONE_TIERS = {"Rough", "Flawed", "Fine", "Flawless", "Perfect"};
+
+    private static final String STORED = "Stored: ";
+    private static final char FORMAT = '\u00a7';
+
+    private SackLoreParser() {}
+
+    /** Amount from a {@code "Stored: 1,234/2.2k"} line, or -1 if the line has none. */
+    static int storedAmount(String line) {
+        line = plain(line);
+        int at = line.indexOf(STORED);
+        if (at < 0) return -1;
+        int slash = line.indexOf('/');
+        // The amount is whatever sits between the label and the slash
+        if (slash >= 0 && slash < at) return -1;
+        return parseCount(line, at + STORED.length(), slash < 0 ? line.length() : slash);
+    }
+
+    /**
+     * Capacity after the slash of a {@code "Stored:"} line, expanding k/M suffixes, or -1.
+     * Hypixel rounds it ({@code 2.2k} for 2,240), so compare against it loosely.
+     */
+    static long capacity(String line) {
+        line = plain(line);
+        int at = line.indexOf(STORED);
+        if (at < 0) return -1;
+        int slash = line.indexOf('/', at);
+        if (slash < 0) return -1;
+        int i = skipSpaces(line, slash + 1, line.length());
+        long whole = 0;
+        long fraction = 0;
+        long fractionScale = 1;
+        boolean digits = false;
+        boolean inFraction = false;
+        for (; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (inFraction) {
+                    // Digits past the millions cannot change the result
+                    if (fractionScale < 1_000_000) {
+                        fraction = fraction * 10 + (c - '0');
+                        fractionScale *= 10;
+                    }
+                } else {
+                    whole = whole * 10 + (c - '0');
+                    if (whole > Integer.MAX_VALUE) return -1;
+                }
+            } else if (c == ',' && !inFraction) {
+                continue;
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!digits) return -1;
+        long multiplier = 1;
+        if (i < line.length()) {
+            char suffix = line.charAt(i);
+            if (suffix == 'k' || suffix == 'K') multiplier = 1_000;
+            else if (suffix == 'm' || suffix == 'M') multiplier = 1_000_000;
+        }
+        return whole * multiplier + fraction * multiplier / fractionScale;
+    }
+
+    /**
+     * Parses a gemstone sack line such as {@code " Rough: 1,234 (...)"}: the second
+     * space-separated word must be a tier followed by a colon and the third the count.
+     * Returns {@code (tier << 32) | count} (see {@link #tierOf} and {@link #countOf}), or -1.
+     */
+    static long gemstoneEntry(String line) {
+        line = plain(line);
+        int firstSpace = line.indexOf(' ');
+        if (firstSpace < 0) return -1;
+        int secondSpace = line.indexOf(' ', firstSpace + 1);
+        if (secondSpace < 0) return -1;
+        int thirdSpace = line.indexOf(' ', secondSpace + 1);
+        if (thirdSpace < 0) return -1;
+        // Require a fourth word, as the old split(" ").length >= 4 check did
+        boolean hasFourth = false;
+        for (int i = thirdSpace + 1; i < line.length(); i++) {
+            if (line.charAt(i) != ' ') {
+                hasFourth = true;
+                break;
+            }
+        }
+        if (!hasFourth) return -1;
+
+        int tier = tierAt(line, firstSpace + 1, secondSpace);
+        if (tier < 0) return -1;
+        int count = parseCount(line, secondSpace + 1, thirdSpace);
+        if (count < 0) return -1;
+        return ((long) tier << 32) | count;
+    }
+
+    static int tierOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    static int countOf(long entry) {
+        return (int) entry;
+    }
+
+    /** Index of the {@code "Tier:"} word spanning [start, end), or -1. */
+    private static int tierAt(String line, int start, int end) {
+        int length = end - start - 1;
+        if (length <= 0 || line.charAt(end - 1) != ':') return -1;
+        for (int t = 0; t < GEMSTONE_TIERS.length; t++) {
+            String tier = GEMSTONE_TIERS[t];
+            if (tier.length() == length && line.regionMatches(start, tier, 0, length)) return t;
+        }
+        return -1;
+    }
+
+    /** Non-negative int in [start, end) with optional commas and surrounding spaces, or -1. */
+    private static int parseCount(String line, int start, int end) {
+        int i = skipSpaces(line, start, end);
+        long value = 0;
+        boolean digits = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) return -1;
+                digits = true;
+            } else if (c != ',') {
+                break;
+            }
+        }
+        if (!digits || skipSpaces(line, i, end) != end) return -1;
+        return (int) value;
+    }
+
+    /** {@code line} without {@code §x} colour codes; the same instance when it has none. */
+    static String plain(String line) {
+        int first = line.indexOf(FORMAT);
+        if (first < 0) return line;
+        StringBuilder out = new StringBuilder(line.length());
+        out.append(line, 0, first);
+        for (int i = first; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == FORMAT) {
+                i++;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static int skipSpaces(String line, int i, int end) {
+        while (i < end && Character.isWhitespace(line.charAt(i))) i++;
+        return i;
+    }
+}
@@ -0,0 +1,103 @@
+package inventoryreader.ir;
+
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.HoverEvent;
+import net.minecraft.network.chat.HoverEvent.ShowText;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parses {@code [Sacks]} chat messages into item deltas.
+ *
+ * Registered with {@link ChatIngestDispatcher}, so it only ever sees messages that start
+ * with the prefix and runs on the ingest thread. Deltas from every message in a drain are
+ * summed and applied with a single {@link ResourcesManager#saveData} call in
+ * {@link #endBatch()}.
+ */
+final class SackMessageParser implements ChatIngestDispatcher.Parser {
+    private static final Pattern SACKS_PATTERN_1 = Pattern.compile(
+        "\\[Sacks\\] [+-].+ items?, [+-].+ items?\\. \\(Last .+s\\.\\).*"
+    );
+    private static final Pattern SACKS_PATTERN_2 = Pattern.compile(
+        "\\[Sacks\\] [+-].+ items?\\. \\(Last .+s\\.\\).*"
+    );
+
+    private final Map<String, Integer> batch = new HashMap<>();
+
+    @Override
+    public boolean parse(Component message) {
+        return parse(message, batch);
+    }
+
+    @Override
+    public void endBatch() {
+        if (batch.isEmpty()) return;
+        Map<String, Integer> deltas = new HashMap<>(batch);
+        batch.clear();
+        SackRegistry.getInstance().noteChatChanges(deltas.keySet());
+        ResourcesManager.getInstance().saveData(ResourcesManager.SOURCE_SACKS, deltas);
+    }
+
+    /** Adds the item deltas of a sack message to {@code itemMap}; false if it isn't one. */
+    private boolean parse(Component text, Map<String, Integer> itemMap) {
+        String messageString = text.getString();
+        boolean is1stMatcher = SACKS_PATTERN_1.matcher(messageString).find();
+        if (!is1stMatcher && !SACKS_PATTERN_2.matcher(messageString).find()) {
+            return false;
+        }
+        List<Component> contents = text.getSiblings();
+        Map<String, Integer> parsed = new HashMap<>();
+        if (is1stMatcher) {
+            Component hoverChildren1 = hoverText(contents.getFirst());
+            Component hoverChildren2 = hoverText(contents.get(3));
+            if (hoverChildren1 == null || hoverChildren1.getSiblings().isEmpty() ||
+                hoverChildren2 == null || hoverChildren2.getSiblings().isEmpty()) {
+                IrMetrics.increment("chat.sacks.parse_failed");
+                InventoryReader.LOGGER.warn("Hover text is empty or null");
+                return false;
+            }
+            getItemMapFromText(hoverChildren1.getSiblings(), parsed);
+            getItemMapFromText(hoverChildren2.getSiblings(), parsed);
+        } else {
+            Component hoverChildren = hoverText(contents.getFirst());
+            if (hoverChildren == null || hoverChildren.getSiblings().isEmpty()) {
+                IrMetrics.increment("chat.sacks.parse_failed");
+                InventoryReader.LOGGER.warn("Hover text is empty or null");
+                return false;
+            }
+            getItemMapFromText(hoverChildren.getSiblings(), parsed);
+        }
+        // Merged only once the whole message parsed, so a bad line doesn't apply half of it
+        parsed.forEach((name, count) -> itemMap.merge(name, count, Integer::sum));
+        return true;
+    }
+
+    private static Component hoverText(Component component) {
+        HoverEvent hoverEvent = component.getStyle().getHoverEvent();
+        return hoverEvent instanceof ShowText showText ? showText.value() : null;
+    }
+
+    private static void getItemMapFromText(List<Component> contents, Map<String, Integer> itemMap) {
+        int count = 0;
+        String name = "";
+        for (int i = 0; i < contents.size()-1; i++) {
+            if (contents.get(i).getString().isEmpty()) {
+                continue;
+            }
+            if (i % 4 == 0) {
+                String num = contents.get(i).getString().trim().replaceAll(",", "");
+                count = Integer.parseInt(num);
+            } else if (i % 4 == 1) {
+                name = contents.get(i).getString().trim();
+                InventoryReader.LOGGER.debug("Found item: " + name + " with count: " + count);
+                if (itemMap.containsKey(name)) {
+                    count += itemMap.get(name);
+                }
+                itemMap.put(name, count);
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package inventoryreader.ir;
 
-import java.io.*;
 import java.util.*;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.network.chat.Component;
@@ -10,8 +9,6 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.component.ItemLore;
 
 public class SackReader {
-    private static final Set<String> GEMSTONE_RARITIES = new HashSet<>(Arrays.asList("Rough:", "Flawed:", "Fine:", "Flawless:", "Perfect:"));
-    private static final File SACK_NAMES_FILE = new File(FilePathManager.DATA_DIR, "sackNames.txt");
     private static SackReader instance;
     private static boolean needsReminder = false;
     private static final ResourcesManager RESOURCES_MANAGER = ResourcesManager.getInstance();
@@ -23,35 +20,6 @@ public class SackReader {
         return instance;
     }
     
-    public List<String> loadSackNames() {
-        List<String> sackNames = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(SACK_NAMES_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    sackNames.add(line.trim());
-                }
-            }
-            InventoryReader.LOGGER.info("Loaded {} sack names from file", sackNames.size());
-            
-        } catch (IOException e) {
-            InventoryReader.LOGGER.error("Failed to load sack names from file", e);
-        }
-        return sackNames;
-    }
-
-    public void saveSackNames(List<String> sackNames) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(SACK_NAMES_FILE))) {
-            for (String sackName : sackNames) {
-                writer.write(sackName);
-                writer.newLine();
-            }
-            InventoryReader.LOGGER.info("Saved {} sack names to file", sackNames.size());
-        } catch (IOException e) {
-            InventoryReader.LOGGER.error("Failed to save sack names to file", e);
-        }
-    }
-
     public static void setNeedsReminder(boolean state) {
         needsReminder = state;
     }
@@ -61,26 +29,59 @@ public class SackReader {
     }
 
     public void saveLoreComponents(AbstractContainerMenu handler, String title) {
-        List<String> sackNames = loadSackNames();
-        if (sackNames.contains(title)) {
+        List<Slot> slots = handler.slots;
+        int slotsToIterate = slots.size() - 36; // this excludes player inventory, excludes the last 36 slots
+        SackRegistry registry = SackRegistry.getInstance();
+        long hash = contentHash(slots, slotsToIterate);
+        if (registry.isUnchanged(title, hash)) {
+            IrMetrics.increment("sacks.snapshot.unchanged");
             return;
+        }
+
+        // Unchanged since it was last read, possibly in an earlier session: reuse that read
+        Map<String, Integer> sackData = registry.storedContents(title, hash);
+        if (sackData != null) {
+            IrMetrics.increment("sacks.snapshot.restored");
         } else {
-            sackNames.add(title);
+            sackData = new HashMap<>();
+            if (title.contains("Gemstone")) {
+                readGemstoneSackData(slots, slotsToIterate, sackData);
+            } else {
+                readSackData(slots, slotsToIterate, sackData);
+            }
+            IrMetrics.increment("sacks.snapshot.read");
+        }
+        registry.recordSnapshot(title, hash, sackData);
+
+        // Only the first visit seeds totals; afterwards the [Sacks] chat messages keep them current
+        if (registry.add(title)) {
             setNeedsReminder(false);
-            
-            saveSackNames(sackNames);
-            
             SendingManager.unblockDataSend();
+            RESOURCES_MANAGER.saveData(ResourcesManager.SOURCE_SACKS, sackData);
+            registry.markTracked(title);
         }
+    }
 
-        Map<String, Integer> sackData = new HashMap<>();
-        if (title.contains("Gemstone")) {
-            saveGemstoneSackData(handler, sackData);
-            return;
+    /**
+     * Hash of the sack slots' names and lore. Components hash structurally, so this needs no
+     * string flattening, changes whenever a stored amount does and comes out the same in the
+     * next session; should it ever differ, the sack is just read again.
+     */
+    private static long contentHash(List<Slot> slots, int count) {
+        long hash = count;
+        for (int i = 0; i < count; i++) {
+            ItemStack stack = slots.get(i).getItem();
+            if (stack.isEmpty()) {
+                hash = hash * 31;
+                continue;
+            }
+            hash = hash * 31 + stack.getHoverName().hashCode();
+            hash = hash * 31 + Objects.hashCode(stack.get(DataComponents.LORE));
         }
-        List<Slot> slots = handler.slots;
-        InventoryReader.LOGGER.info("Number of slots: " + slots.size());
-        int slotsToIterate = slots.size() - 36;
+        return hash;
+    }
+
+    private void readSackData(List<Slot> slots, int slotsToIterate, Map<String, Integer> sackData) {
         for (int i = 0; i < slotsToIterate; i++) {
             Slot slot = slots.get(i);
             ItemStack stack = slot.getItem();
@@ -90,13 +91,16 @@ public class SackReader {
                 if (loreComponent != null) {
                     List<Component> loreLines = loreComponent.lines();
                     for (Component line : loreLines) {
-                        String l = line.getString();
-                        if (l.contains("Stored:")) {
-                            String[] parts = l.split("/");
-                            String[] itemCountStr = parts[0].split("Stored: ");
-                            String itemCountCleaned = itemCountStr[1].trim().replace(",", "");
-                            int itemCount = Integer.parseInt(itemCountCleaned);
+                        String text = line.getString();
+                        int itemCount = SackLoreParser.storedAmount(text);
+                        if (itemCount >= 0) {
                             sackData.put(itemName, itemCount);
+                            // Pickups of a full item go to the inventory instead of the sack
+                            long capacity = SackLoreParser.capacity(text);
+                            if (capacity > 0 && itemCount >= capacity) {
+                                IrMetrics.increment("sacks.item.full");
+                                InventoryReader.LOGGER.debug("{} is at its sack capacity ({}/{})", itemName, itemCount, capacity);
+                            }
                         }
                     }
                 } else {
@@ -104,13 +108,9 @@ public class SackReader {
                 }
             }
         }
-        RESOURCES_MANAGER.saveData(sackData);
     }
 
-    private void saveGemstoneSackData(AbstractContainerMenu handler, Map<String, Integer> sackData){
-        List<Slot> slots = handler.slots;
-        InventoryReader.LOGGER.info("Number of slots: " + slots.size());
-        int slotsToIterate = slots.size() - 36; // this excludes player inventory, excludes the last 36 slots
+    private void readGemstoneSackData(List<Slot> slots, int slotsToIterate, Map<String, Integer> sackData) {
         for (int i = 0; i < slotsToIterate; i++) {
             Slot slot = slots.get(i);
             ItemStack stack = slot.getItem();
@@ -122,17 +122,12 @@ public class SackReader {
                 ItemLore loreComponent = stack.get(DataComponents.LORE);
                 if (loreComponent != null) {
                     List<Component> loreLines = loreComponent.lines();
+                    String gemstone = itemName.substring(0, itemName.length() - 1);
                     for (Component line : loreLines) {
-                        String l = line.getString();
-                        String[] parts = l.split(" ");
-                        if (parts.length < 4) {
-                            continue;
-                        }
-                        String rarity = parts[1];
-                        if (GEMSTONE_RARITIES.contains(rarity)) {
-                            String itemGemstone = rarity.substring(0, rarity.length()-1)  + " " + itemName.substring(0,itemName.length()-1);
-                            Integer itemCount = Integer.parseInt(parts[2].trim().replace(",", ""));
-                            sackData.put(itemGemstone, itemCount);
+                        long entry = SackLoreParser.gemstoneEntry(line.getString());
+                        if (entry >= 0) {
+                            String itemGemstone = SackLoreParser.GEMSTONE_TIERS[SackLoreParser.tierOf(entry)] + " " + gemstone;
+                            sackData.put(itemGemstone, SackLoreParser.countOf(entry));
                         }
                     }
                 } else {
@@ -140,6 +135,5 @@ public class SackReader {
                 }
             }
         }
-        RESOURCES_MANAGER.saveData(sackData);
     }
 }
\ No newline at end of file
@@ -0,0 +1,219 @@
+package inventoryreader.ir;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sacks the player has opened, plus what each held the last time it was looked at.
+ *
+ * Names live in a hash set that is read from sackNames.txt once; a new name is appended to
+ * the file as a single line. Snapshots carry a hash of the sack screen's contents, so
+ * reopening an unchanged sack can skip reading it again. The hash and contents of each
+ * sack's latest read are also kept in sack_snapshots.json, so the first open of a session
+ * can be skipped too when the sack has not changed since.
+ */
+public final class SackRegistry {
+    private static final SackRegistry INSTANCE = new SackRegistry();
+    private static final File SACK_NAMES_FILE = new File(FilePathManager.DATA_DIR, "sackNames.txt");
+
+    private final Set<String> names = new HashSet<>();
+    private boolean loaded = false;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    // Latest read of each sack in this or an earlier session; mirrors sack_snapshots.json
+    private final Map<String, StoredSnapshot> stored = new ConcurrentHashMap<>();
+    private final Executor storeLane = IrRuntime.getInstance().serialIo("sacks.snapshots");
+    private final AtomicBoolean storeQueued = new AtomicBoolean(false);
+    // Item name -> when a [Sacks] chat delta last changed it
+    private final Map<String, Long> chatChangedAt = new ConcurrentHashMap<>();
+
+    private SackRegistry() {}
+
+    public static SackRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized boolean contains(String sack) {
+        ensureLoaded();
+        return names.contains(sack);
+    }
+
+    /** Registers a sack; returns true (and appends it to the file) if it wasn't known yet. */
+    public synchronized boolean add(String sack) {
+        ensureLoaded();
+        if (!names.add(sack)) return false;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(SACK_NAMES_FILE, true))) {
+            writer.write(sack);
+            writer.newLine();
+        } catch (IOException e) {
+            InventoryReader.LOGGER.error("Failed to append sack name to file", e);
+        }
+        return true;
+    }
+
+    /** Forgets everything; the names file is re-read on next use. Called after a data reset. */
+    public synchronized void reset() {
+        names.clear();
+        loaded = false;
+        snapshots.clear();
+        stored.clear();
+        chatChangedAt.clear();
+    }
+
+    /** True if {@code sack} was last seen with the same content hash. */
+    public boolean isUnchanged(String sack, long contentHash) {
+        Snapshot last = snapshots.get(sack);
+        return last != null && last.contentHash == contentHash;
+    }
+
+    /**
+     * Contents {@code sack} had when it was last read with this content hash, in this or an
+     * earlier session, or null. A match means the screen shows what was read then.
+     */
+    public Map<String, Integer> storedContents(String sack, long contentHash) {
+        synchronized (this) {
+            ensureLoaded();
+        }
+        StoredSnapshot last = stored.get(sack);
+        return last != null && last.contentHash == contentHash ? last.contents : null;
+    }
+
+    public void recordSnapshot(String sack, long contentHash, Map<String, Integer> contents) {
+        Snapshot snapshot = new Snapshot(contentHash, contents);
+        snapshots.put(sack, snapshot);
+        ItemLocationIndex.getInstance().replace(sack, contents);
+        StoredSnapshot previous = stored.get(sack);
+        stored.compute(sack, (k, prior) -> new StoredSnapshot(contentHash, snapshot.contents, prior != null && prior.tracked));
+        if (previous == null || previous.contentHash != contentHash) requestStore();
+    }
+
+    /**
+     * Notes that {@code sack}'s contents went into the resource ledger, so the ledger's sack
+     * counts can be checked against it. Sacks last read before per-source tracking began
+     * never were, and the ledger holds only the chat deltas seen since for their items.
+     */
+    public void markTracked(String sack) {
+        StoredSnapshot previous = stored.get(sack);
+        if (previous == null || previous.tracked) return;
+        stored.computeIfPresent(sack, (k, prior) -> new StoredSnapshot(prior.contentHash, prior.contents, true));
+        requestStore();
+    }
+
+    /** Rewrites sack_snapshots.json off the calling thread, once per burst of changes. */
+    private void requestStore() {
+        if (!storeQueued.compareAndSet(false, true)) return;
+        storeLane.execute(() -> {
+            storeQueued.set(false);
+            ResourcesManager.atomicWriteJson(FilePathManager.SACK_SNAPSHOTS_JSON, new Gson().toJson(new HashMap<>(stored)));
+        });
+    }
+
+    /** Records that sack chat messages just changed these items. */
+    public void noteChatChanges(Collection<String> items) {
+        long now = System.currentTimeMillis();
+        for (String item : items) chatChangedAt.put(item, now);
+    }
+
+    /**
+     * Counts that are still known exactly: items from each tracked sack's latest snapshot that
+     * no chat delta has touched since. Chat messages don't name the sack, so once one changes
+     * an item its snapshot count is out of date until that sack is opened again. Sacks not
+     * {@link #markTracked tracked} are left out, as the ledger has no baseline for them.
+     */
+    public Map<String, Integer> settledCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        Map<String, Long> seenAt = new HashMap<>();
+        for (Map.Entry<String, Snapshot> entry : snapshots.entrySet()) {
+            StoredSnapshot persisted = stored.get(entry.getKey());
+            if (persisted == null || !persisted.tracked) continue;
+            Snapshot snapshot = entry.getValue();
+            for (Map.Entry<String, Integer> e : snapshot.contents.entrySet()) {
+                String item = e.getKey();
+                if (chatChangedAt.getOrDefault(item, 0L) >= snapshot.seenAtMillis) continue;
+                if (seenAt.getOrDefault(item, Long.MIN_VALUE) >= snapshot.seenAtMillis) continue;
+                seenAt.put(item, snapshot.seenAtMillis);
+                counts.put(item, e.getValue());
+            }
+        }
+        return counts;
+    }
+
+    /** Last-seen contents of every sack opened this session. */
+    public Map<String, Snapshot> getSnapshots() {
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        loadStoredSnapshots();
+        if (!SACK_NAMES_FILE.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(SACK_NAMES_FILE))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    names.add(line.trim());
+                }
+            }
+            InventoryReader.LOGGER.info("Loaded {} sack names from file", names.size());
+        } catch (IOException e) {
+            InventoryReader.LOGGER.error("Failed to load sack names from file", e);
+        }
+    }
+
+    private void loadStoredSnapshots() {
+        if (!FilePathManager.SACK_SNAPSHOTS_JSON.exists()) return;
+        try (FileReader reader = new FileReader(FilePathManager.SACK_SNAPSHOTS_JSON)) {
+            Map<String, StoredSnapshot> loadedSnapshots = new Gson().fromJson(reader, new TypeToken<Map<String, StoredSnapshot>>() {}.getType());
+            if (loadedSnapshots == null) return;
+            for (Map.Entry<String, StoredSnapshot> e : loadedSnapshots.entrySet()) {
+                if (e.getValue() != null && e.getValue().contents != null) stored.putIfAbsent(e.getKey(), e.getValue());
+            }
+        } catch (IOException | JsonParseException e) {
+            InventoryReader.LOGGER.error("Failed to load sack snapshots", e);
+        }
+    }
+
+    /** A sack's contents as persisted; {@link Snapshot} without the session-local timestamp. */
+    private static class StoredSnapshot {
+        long contentHash;
+        Map<String, Integer> contents;
+        // Whether the ledger was seeded from this sack; see markTracked
+        boolean tracked;
+
+        StoredSnapshot(long contentHash, Map<String, Integer> contents, boolean tracked) {
+            this.contentHash = contentHash;
+            this.contents = contents;
+            this.tracked = tracked;
+        }
+    }
+
+    public static class Snapshot {
+        public final long contentHash;
+        public final Map<String, Integer> contents;
+        public final long seenAtMillis;
+
+        public Snapshot(long contentHash, Map<String, Integer> contents) {
+            this.contentHash = contentHash;
+            this.contents = Collections.unmodifiableMap(new LinkedHashMap<>(contents));
+            this.seenAtMillis = System.currentTimeMillis();
+        }
+    }
+}
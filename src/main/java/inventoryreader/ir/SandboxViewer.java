@@ -2,6 +2,7 @@ package inventoryreader.ir;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import inventoryreader.ir.recipes.RecipeGraph;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
@@ -32,7 +33,9 @@ public class SandboxViewer extends Screen {
         RESOURCE_VIEWER,
         RECIPE_VIEWER,
         FORGE_MODE,
-        MODIFY_RESOURCES
+        MODIFY_RESOURCES,
+        CRAFTABLE,
+        FIND_ITEMS
     }
 
     private Mode mode = Mode.RESOURCE_VIEWER;
@@ -46,26 +49,38 @@ public class SandboxViewer extends Screen {
 
     private List<String> recipeNames = new ArrayList<>();
     private List<String> filteredRecipeNames = new ArrayList<>();
+    private final SearchIndex.Searcher<String> recipeSearcher = new SearchIndex.Searcher<>();
+    private final SearchIndex.Searcher<ResourcesManager.ResourceEntry> resourceSearcher = new SearchIndex.Searcher<>();
     private String recipeSearchTerm = "";
     private String selectedRecipe = null;
     private RecipeManager.RecipeNode expandedRecipeTree = null;
     private Map<String, Integer> simpleRecipe = null;
 
     private ResourcesManager.RemainingResponse remainingResult = null;
+    // Forge plans are computed off-thread; appliedPlan is the result currently on screen
+    private final PlanSlot forgePlan = new PlanSlot();
+    private PlanSlot.Result appliedPlan = null;
     private int craftAmount = 1;
     private boolean craftable = false;
     private final List<String> messages = new ArrayList<>();
 
     private EditBox searchBox;
     private EditBox amountField;
-    private final Map<String, EditBox> resourceAmountFields = new HashMap<>();
+    // Modify mode: one pooled row per visible line, rebound to whichever resource scrolls into it
+    private final List<AmountRow> amountRows = new ArrayList<>();
+    private Map<String, ResourcesManager.ResourceEntry> resourceIndex = new HashMap<>();
     private String activeTextField = null;
     private int scrollOffset = 0;
 
-    private final Map<String, Boolean> expandedNodes = new HashMap<>();
+    private ExpansionState treeExpansion = ExpansionState.EMPTY;
 
-    private record ClickableElement(int x, int y, int width, int height, Runnable action) {}
-    private final List<ClickableElement> clickableElements = new ArrayList<>();
+    // Click targets recorded during render; resolved in mouseClicked without per-row callbacks
+    private static final int HIT_CRAFTABLE = 0;
+    private static final int HIT_RECIPE = 1;
+    private static final int HIT_TREE_NODE = 2;
+    private static final int HIT_RESOURCE_MINUS = 3;
+    private static final int HIT_RESOURCE_PLUS = 4;
+    private final HitIndex hits = new HitIndex();
 
     private int recipeCombinedScrollOffset = 0;
     private int recipeCombinedMaxScroll = 0;
@@ -75,6 +90,20 @@ public class SandboxViewer extends Screen {
     private int forgeCombinedMaxScroll = 0;
     private int forgeCombinedAreaX = 0, forgeCombinedAreaY = 0, forgeCombinedAreaWidth = 0, forgeCombinedAreaHeight = 0;
 
+    private List<CraftableScanner.CraftableEntry> craftableEntries = new ArrayList<>();
+    private List<CraftableScanner.CraftableEntry> filteredCraftable = new ArrayList<>();
+    private CraftableScanner.ScanResult shownScan = null;
+    // Inputs of the last scan this screen asked for, so render only re-requests when they move
+    private long scanRequestedVersion = -1;
+    private RecipeGraph scanRequestedGraph = null;
+    private boolean craftableSortByAmount = true;
+    private int tabWidth = 110;
+
+    private static final int FIND_RESULT_LIMIT = 50;
+    private String findSearchTerm = "";
+    private List<FindRow> findRows = new ArrayList<>();
+    private long findVersion = -1;
+
     private Map<String, Integer> modifiedResources = new LinkedHashMap<>();
     private List<ResourcesManager.ResourceEntry> selectedResources = new ArrayList<>();
 
@@ -88,7 +117,8 @@ public class SandboxViewer extends Screen {
         int centerX = this.width / 2;
         int buttonHeight = 20;
 
-        int tabWidth = 110;
+        // Shrink tabs when the scaled screen is too narrow to fit all of them at full width
+        tabWidth = Math.min(110, (this.width - 40) / Mode.values().length);
         int tabHeight = 20;
         int startX = 20;
         int tabY = 32;
@@ -113,11 +143,23 @@ public class SandboxViewer extends Screen {
             this.init();
         }).bounds(startX + 3 * tabWidth, tabY, tabWidth, tabHeight).build());
 
+        this.addRenderableWidget(Button.builder(Component.literal("Can Craft"), button -> {
+            mode = Mode.CRAFTABLE;
+            this.init();
+        }).bounds(startX + 4 * tabWidth, tabY, tabWidth, tabHeight).build());
+
+        this.addRenderableWidget(Button.builder(Component.literal("Find"), button -> {
+            mode = Mode.FIND_ITEMS;
+            this.init();
+        }).bounds(startX + 5 * tabWidth, tabY, tabWidth, tabHeight).build());
+
         switch (mode) {
             case RESOURCE_VIEWER -> initResourceViewer(buttonHeight);
             case RECIPE_VIEWER -> initRecipeViewer(centerX, buttonHeight);
             case FORGE_MODE -> initForgeMode(centerX, buttonHeight);
             case MODIFY_RESOURCES -> initModifyResources(buttonHeight);
+            case CRAFTABLE -> initCraftable(buttonHeight);
+            case FIND_ITEMS -> initFindItems(buttonHeight);
         }
     }
 
@@ -173,7 +215,7 @@ public class SandboxViewer extends Screen {
     }
 
     private void initModifyResources(int buttonHeight) {
-        resourceAmountFields.clear();
+        amountRows.clear();
         activeTextField = null;
 
         searchBox = new EditBox(this.font, 30, 56, 210, 18, Component.literal("Search Resources"));
@@ -187,11 +229,53 @@ public class SandboxViewer extends Screen {
         loadResources();
     }
 
+    private void initCraftable(int buttonHeight) {
+        searchBox = new EditBox(this.font, 30, 56, 210, 18, Component.literal(""));
+        searchBox.setHint(Component.literal("Search recipes..."));
+        searchBox.setResponder(this::onRecipeSearchChanged);
+        this.addRenderableWidget(searchBox);
+
+        this.addRenderableWidget(Button.builder(
+            Component.literal(craftableSortByAmount ? "Sort: Amount" : "Sort: Name"),
+            button -> {
+                craftableSortByAmount = !craftableSortByAmount;
+                button.setMessage(Component.literal(craftableSortByAmount ? "Sort: Amount" : "Sort: Name"));
+                filterCraftable();
+            }
+        ).bounds(this.width - 110, 56, 100, 18).build());
+
+        shownScan = null;
+        scanRequestedVersion = -1;
+        scanRequestedGraph = null;
+        requestCraftableScan();
+    }
+
+    /** Asks for a scan unless one was already requested for the current resources and recipes. */
+    private void requestCraftableScan() {
+        long version = ResourcesManager.getInstance().getVersion();
+        RecipeGraph graph = RecipeManager.getInstance().getRecipeGraph();
+        if (version == scanRequestedVersion && graph == scanRequestedGraph) return;
+        scanRequestedVersion = version;
+        scanRequestedGraph = graph;
+        CraftableScanner.getInstance().requestScan();
+    }
+
+    private void initFindItems(int buttonHeight) {
+        searchBox = new EditBox(this.font, 30, 56, 210, 18, Component.literal(""));
+        searchBox.setHint(Component.literal("Find stored items..."));
+        searchBox.setValue(findSearchTerm);
+        searchBox.setResponder(this::onFindSearchChanged);
+        this.addRenderableWidget(searchBox);
+
+        findVersion = -1;
+    }
+
     private void saveResourceChanges() {
-        ResourcesManager rm = ResourcesManager.getInstance();
+        ResourcesManager.Transaction tx = ResourcesManager.getInstance().edit();
         for (ResourcesManager.ResourceEntry entry : selectedResources) {
-            rm.setResourceAmount(entry.name, entry.amount);
+            tx.set(entry.name, entry.amount);
         }
+        tx.commit();
         selectedResources.clear();
         modifiedResources.clear();
         Minecraft client = Minecraft.getInstance();
@@ -201,16 +285,18 @@ public class SandboxViewer extends Screen {
     }
 
     private void loadResources() {
-        if (mode == Mode.MODIFY_RESOURCES) {
-            resources = resourcesManager.getAllResourceEntriesIncludingZero();
-        } else {
-            resources = resourcesManager.getAllResourceEntries();
-        }
+        // Zero amounts are loaded in both modes; the viewer hides them unless searching
+        resources = resourcesManager.getAllResourceEntriesIncludingZero();
+        resourceSearcher.setIndex(SearchIndex.build(resources, entry -> entry.name));
+        Map<String, ResourcesManager.ResourceEntry> index = new HashMap<>(resources.size() * 2);
+        for (ResourcesManager.ResourceEntry entry : resources) index.put(entry.name, entry);
+        resourceIndex = index;
         filterResources();
     }
 
     private void loadRecipes() {
         recipeNames = recipeManager.getRecipeNames();
+        recipeSearcher.setIndex(recipeManager.getRecipeSearchIndex());
         filterRecipes();
 
         if (selectedRecipe != null) {
@@ -220,17 +306,12 @@ public class SandboxViewer extends Screen {
     }
 
     private void filterResources() {
-        if (mode == Mode.MODIFY_RESOURCES) {
-            filteredResources = resources.stream()
-                .filter(resource -> resourceSearchTerm.isEmpty() || resource.name.toLowerCase().contains(resourceSearchTerm.toLowerCase()))
-                .sorted((a, b) -> a.name.compareToIgnoreCase(b.name))
-                .collect(Collectors.toList());
+        boolean hasSearch = resourceSearchTerm != null && !resourceSearchTerm.isEmpty();
+        if (mode == Mode.MODIFY_RESOURCES || hasSearch) {
+            filteredResources = resourceSearcher.search(resourceSearchTerm);
         } else {
-            boolean hasSearch = resourceSearchTerm != null && !resourceSearchTerm.isEmpty();
-            filteredResources = resources.stream()
-                .filter(resource -> hasSearch || resource.amount > 0)
-                .filter(resource -> resourceSearchTerm.isEmpty() || resource.name.toLowerCase().contains(resourceSearchTerm.toLowerCase()))
-                .sorted((a, b) -> a.name.compareToIgnoreCase(b.name))
+            filteredResources = resourceSearcher.getIndex().all().stream()
+                .filter(resource -> resource.amount > 0)
                 .collect(Collectors.toList());
         }
         int maxVisible = getResourceMaxVisibleItems();
@@ -239,36 +320,70 @@ public class SandboxViewer extends Screen {
     }
 
     private void filterRecipes() {
-        if (recipeSearchTerm.isEmpty()) {
-            filteredRecipeNames = new ArrayList<>(recipeNames);
-        } else {
-            filteredRecipeNames = recipeNames.stream()
-                .filter(name -> name.toLowerCase().contains(recipeSearchTerm.toLowerCase()))
-                .collect(Collectors.toList());
-        }
+        recipeSearcher.setIndex(recipeManager.getRecipeSearchIndex());
+        filteredRecipeNames = recipeSearcher.search(recipeSearchTerm);
         int maxVisible = getRecipeMaxVisibleItems();
         int maxOffset = Math.max(0, filteredRecipeNames.size() - maxVisible);
         if (scrollOffset > maxOffset) scrollOffset = maxOffset;
     }
 
+    private void filterCraftable() {
+        String term = recipeSearchTerm.toLowerCase();
+        filteredCraftable = craftableEntries.stream()
+            .filter(entry -> term.isEmpty() || entry.name.toLowerCase().contains(term))
+            .sorted(craftableSortByAmount
+                ? (a, b) -> a.maxCraftable != b.maxCraftable
+                    ? Integer.compare(b.maxCraftable, a.maxCraftable)
+                    : a.name.compareToIgnoreCase(b.name)
+                : (a, b) -> a.name.compareToIgnoreCase(b.name))
+            .collect(Collectors.toList());
+        int maxVisible = getRecipeMaxVisibleItems();
+        int maxOffset = Math.max(0, filteredCraftable.size() - maxVisible);
+        if (scrollOffset > maxOffset) scrollOffset = maxOffset;
+    }
+
     private void onResourceSearchChanged(String text) {
         resourceSearchTerm = text;
         
         scrollOffset = 0;
-        if (mode == Mode.RESOURCE_VIEWER) {
-            if (resourceSearchTerm != null && !resourceSearchTerm.isEmpty()) {
-                resources = resourcesManager.getAllResourceEntriesIncludingZero();
-            } else {
-                resources = resourcesManager.getAllResourceEntries();
-            }
-        }
         filterResources();
     }
 
     private void onRecipeSearchChanged(String text) {
         recipeSearchTerm = text;
     scrollOffset = 0;
-    filterRecipes();
+    if (mode == Mode.CRAFTABLE) {
+        filterCraftable();
+    } else {
+        filterRecipes();
+    }
+    }
+
+    private void onFindSearchChanged(String text) {
+        findSearchTerm = text;
+        scrollOffset = 0;
+        findVersion = -1;
+    }
+
+    /** Re-runs the find query when it or the location index has changed since the last run. */
+    private void refreshFindRows() {
+        ItemLocationIndex index = ItemLocationIndex.getInstance();
+        long version = index.getVersion();
+        if (version == findVersion) return;
+        List<FindRow> rows = new ArrayList<>();
+        if (!findSearchTerm.isBlank()) {
+            for (ItemLocationIndex.Match match : index.search(findSearchTerm, FIND_RESULT_LIMIT)) {
+                rows.add(new FindRow(match.name, match.total, true));
+                for (Map.Entry<String, Integer> location : match.locations.entrySet()) {
+                    rows.add(new FindRow(location.getKey(), location.getValue(), false));
+                }
+            }
+        }
+        // Read after the search, which may itself load the index and bump the version
+        findVersion = index.getVersion();
+        findRows = rows;
+        int maxOffset = Math.max(0, findRows.size() - getRecipeMaxVisibleItems());
+        if (scrollOffset > maxOffset) scrollOffset = maxOffset;
     }
 
     private void onAmountChanged(String text) {
@@ -290,32 +405,36 @@ public class SandboxViewer extends Screen {
 
     private void checkRecipeRequirements() {
         if (selectedRecipe == null) return;
+        forgePlan.request(selectedRecipe, craftAmount);
+    }
+
+    /** Swaps in the newest completed forge plan, if it is for the selected recipe and not shown yet. */
+    private void applyForgePlan() {
+        PlanSlot.Result result = forgePlan.latest();
+        if (result == null || result == appliedPlan) return;
+        if (!result.recipe.equals(selectedRecipe)) return;
+        appliedPlan = result;
+        remainingResult = result.response;
 
-        remainingResult = resourcesManager.getRemainingIngredients(selectedRecipe, craftAmount);
-        
-        InventoryReader.LOGGER.info("Before clearing, messages size: " + messages.size());
-        
         messages.clear();
         if (remainingResult.messages != null && !remainingResult.messages.isEmpty()) {
             for (Map.Entry<String, Integer> entry : remainingResult.messages.entrySet()) {
-                String message = "You need to craft x" + entry.getValue() + " " + entry.getKey();
-                messages.add(message);
-                InventoryReader.LOGGER.info("Adding message: " + message);
+                messages.add("You need to craft x" + entry.getValue() + " " + entry.getKey());
             }
         }
 
-        craftable = remainingResult.full_recipe.ingredients.stream().allMatch(child -> child.amount <= 0);
+        craftable = remainingResult.full_recipe.getIngredients().stream().allMatch(child -> child.amount <= 0);
 
         if (messages.isEmpty() && !craftable) {
-            String message = "Missing resources to craft " + selectedRecipe;
-            messages.add(message);
-            InventoryReader.LOGGER.info("Adding default message: " + message);
+            messages.add("Missing resources to craft " + selectedRecipe);
         }
-        
-        InventoryReader.LOGGER.info("After populating, messages size: " + messages.size());
     }
 
     private void selectRecipe(String name) {
+        if (!name.equals(selectedRecipe)) {
+            remainingResult = null;
+            appliedPlan = null;
+        }
         selectedRecipe = name;
         expandedRecipeTree = recipeManager.expandRecipe(name, craftAmount);
         simpleRecipe = recipeManager.getSimpleRecipe(name, craftAmount);
@@ -331,8 +450,25 @@ public class SandboxViewer extends Screen {
         }
     }
 
-    private void toggleNodeExpanded(String nodePath) {
-        expandedNodes.put(nodePath, !expandedNodes.getOrDefault(nodePath, false));
+    private void onHit(int slot) {
+        switch (hits.kind(slot)) {
+            case HIT_CRAFTABLE -> {
+                craftAmount = (int) hits.arg(slot);
+                recipeSearchTerm = "";
+                scrollOffset = 0;
+                mode = Mode.FORGE_MODE;
+                selectRecipe((String) hits.ref(slot));
+            }
+            case HIT_RECIPE -> selectRecipe((String) hits.ref(slot));
+            case HIT_TREE_NODE -> toggleNodeExpanded(hits.arg(slot));
+            case HIT_RESOURCE_MINUS -> decrementResource((int) hits.arg(slot));
+            case HIT_RESOURCE_PLUS -> incrementResource((int) hits.arg(slot));
+            default -> { }
+        }
+    }
+
+    private void toggleNodeExpanded(long nodePath) {
+        treeExpansion = treeExpansion.toggled(nodePath);
     }
 
     @Override
@@ -352,14 +488,15 @@ public class SandboxViewer extends Screen {
             activeTextField = null;
 
             boolean textFieldClicked = false;
-            for (Map.Entry<String, EditBox> entry : resourceAmountFields.entrySet()) {
-                EditBox field = entry.getValue();
+            for (AmountRow row : amountRows) {
+                if (row.boundName == null) continue;
+                EditBox field = row.field;
                 if (field.isMouseOver(mouseX, mouseY)) {
                     field.setFocused(true);
                     textFieldClicked = true;
-                    activeTextField = entry.getKey();
+                    activeTextField = row.boundName;
                     
-                    if (!entry.getKey().equals(previousActiveField)) {
+                    if (!row.boundName.equals(previousActiveField)) {
                         field.setCursorPosition(0);
                         field.setHighlightPos(field.getValue().length());
                     }
@@ -373,12 +510,10 @@ public class SandboxViewer extends Screen {
             }
         }
         
-        for (ClickableElement element : clickableElements) {
-            if (mouseX >= element.x && mouseX < element.x + element.width &&
-                mouseY >= element.y && mouseY < element.y + element.height) {
-                element.action.run();
-                return true;
-            }
+        int hit = hits.find(mouseX, mouseY);
+        if (hit >= 0) {
+            onHit(hit);
+            return true;
         }
 
         // (Screen's new event system handles child widget clicks automatically)
@@ -390,7 +525,7 @@ public class SandboxViewer extends Screen {
         int keyCode = event.key();
         int modifiers = event.modifiers();
         if (mode == Mode.MODIFY_RESOURCES && activeTextField != null) {
-            EditBox field = resourceAmountFields.get(activeTextField);
+            EditBox field = fieldFor(activeTextField);
             if (field != null && field.isFocused()) {
                 if (keyCode == 258) { // Tab – move between fields
                     boolean shiftPressed = (modifiers & 1) != 0;
@@ -434,21 +569,30 @@ public class SandboxViewer extends Screen {
             }
         }
         
-        if (resourceAmountFields.containsKey(activeTextField)) {
-            resourceAmountFields.get(activeTextField).setFocused(false);
+        EditBox current = fieldFor(activeTextField);
+        if (current != null) {
+            current.setFocused(false);
         }
         
         String newActiveField = visibleResources.get(currentIndex);
         activeTextField = newActiveField;
         
-        if (resourceAmountFields.containsKey(newActiveField)) {
-            EditBox field = resourceAmountFields.get(newActiveField);
+        EditBox field = fieldFor(newActiveField);
+        if (field != null) {
             field.setFocused(true);
             field.setCursorPosition(0);
             field.setHighlightPos(field.getValue().length());
         }
     }
     
+    private EditBox fieldFor(String resourceName) {
+        if (resourceName == null) return null;
+        for (AmountRow row : amountRows) {
+            if (resourceName.equals(row.boundName)) return row.field;
+        }
+        return null;
+    }
+
     @Override
     public boolean charTyped(CharacterEvent event) {
         // Screen's new event system routes char events to focused widgets
@@ -496,6 +640,12 @@ public class SandboxViewer extends Screen {
         if (mode == Mode.RESOURCE_VIEWER || mode == Mode.MODIFY_RESOURCES) {
             maxVisibleItems = getResourceMaxVisibleItems();
             maxItems = filteredResources.size();
+        } else if (mode == Mode.CRAFTABLE) {
+            maxVisibleItems = getRecipeMaxVisibleItems();
+            maxItems = filteredCraftable.size();
+        } else if (mode == Mode.FIND_ITEMS) {
+            maxVisibleItems = getRecipeMaxVisibleItems();
+            maxItems = findRows.size();
         } else {
             maxVisibleItems = getRecipeMaxVisibleItems();
             maxItems = filteredRecipeNames.size();
@@ -526,13 +676,8 @@ public class SandboxViewer extends Screen {
 
             context.fill(0, 30, this.width, 54, 0xFF161616);
 
-            int activeTabX = switch (mode) {
-                case RESOURCE_VIEWER  -> 20;
-                case RECIPE_VIEWER   -> 130;
-                case FORGE_MODE      -> 240;
-                case MODIFY_RESOURCES -> 350;
-            };
-            context.fill(activeTabX, 52, activeTabX + 110, 54, 0xFF5FAF3F);
+            int activeTabX = 20 + mode.ordinal() * tabWidth;
+            context.fill(activeTabX, 52, activeTabX + tabWidth, 54, 0xFF5FAF3F);
 
             context.fill(0, 54, this.width, 78, 0xFF121212);
             context.fill(0, 77, this.width, 78, BORDER_COLOR);
@@ -547,13 +692,15 @@ public class SandboxViewer extends Screen {
             context.fill(contentX, CONTENT_Y, contentX + contentWidth, CONTENT_Y + contentHeight, PANEL_BG);
             drawBorder(context, contentX, CONTENT_Y, contentWidth, contentHeight, BORDER_COLOR);
 
-            clickableElements.clear();
+            hits.clear();
 
             switch (mode) {
                 case RESOURCE_VIEWER  -> renderResourceViewer(context, contentX, CONTENT_Y, contentWidth, contentHeight);
                 case RECIPE_VIEWER   -> renderRecipeViewer(context, contentX, CONTENT_Y, contentWidth, contentHeight);
                 case FORGE_MODE      -> renderForgeMode(context, contentX, CONTENT_Y, contentWidth, contentHeight);
                 case MODIFY_RESOURCES -> renderModifyResources(context, contentX, CONTENT_Y, contentWidth, contentHeight);
+                case CRAFTABLE        -> renderCraftable(context, contentX, CONTENT_Y, contentWidth, contentHeight);
+                case FIND_ITEMS       -> renderFindItems(context, contentX, CONTENT_Y, contentWidth, contentHeight);
             }
 
             super.render(context, mouseX, mouseY, delta);
@@ -655,12 +802,148 @@ public class SandboxViewer extends Screen {
 
         renderRecipeList(context, leftPanelX, contentY, leftPanelWidth, contentHeight);
 
+        applyForgePlan();
         if (selectedRecipe == null || remainingResult == null) {
-            drawCenteredText(context, "Select a recipe to forge", rightPanelX + (contentWidth - leftPanelWidth - 40) / 2, contentY + contentHeight / 2, TEXT_SECONDARY);
+            String hint = selectedRecipe != null && forgePlan.isComputing() ? "Computing..." : "Select a recipe to forge";
+            drawCenteredText(context, hint, rightPanelX + (contentWidth - leftPanelWidth - 40) / 2, contentY + contentHeight / 2, TEXT_SECONDARY);
             return;
         }
         
         renderForgeDetails(context, rightPanelX, contentY, contentWidth - leftPanelWidth - 40, contentHeight);
+        if (forgePlan.isComputing()) {
+            String computing = "Computing...";
+            context.drawString(font, computing, rightPanelX + contentWidth - leftPanelWidth - 40 - font.width(computing) - 6, contentY + 14, TEXT_SECONDARY, false);
+        }
+    }
+
+    private void renderCraftable(GuiGraphics context, int contentX, int contentY, int contentWidth, int contentHeight) {
+        CraftableScanner scanner = CraftableScanner.getInstance();
+        CraftableScanner.ScanResult scan = scanner.getIfFresh();
+        if (scan == null) {
+            // Keep showing the previous result while a rescan runs; a change that lands
+            // mid-scan is picked up once that scan finishes
+            if (!scanner.isScanning()) requestCraftableScan();
+            scan = scanner.getLatest();
+        }
+        if (scan != null && scan != shownScan) {
+            shownScan = scan;
+            craftableEntries = scan.entries;
+            filterCraftable();
+        }
+
+        int x = contentX + 10;
+        int width = contentWidth - 20;
+        int listY = contentY + 10;
+        int lineHeight = 24;
+
+        context.fill(x, listY, x + width, listY + 24, TITLE_BG);
+        drawBorder(context, x, listY, width, 24, BORDER_COLOR);
+        String header = "Craftable Now" + (shownScan != null ? " (" + filteredCraftable.size() + ")" : "");
+        context.drawString(font, header, x + 10, listY + 8, GOLD, false);
+        if (scanner.isScanning()) {
+            String scanning = "Scanning...";
+            context.drawString(font, scanning, x + width - font.width(scanning) - 10, listY + 8, TEXT_SECONDARY, false);
+        }
+        listY += 30;
+
+        if (shownScan == null) {
+            drawCenteredText(context, "Scanning recipes...", x + width / 2, listY + 30, TEXT_SECONDARY);
+            return;
+        }
+        if (filteredCraftable.isEmpty()) {
+            drawCenteredText(context, "Nothing can be crafted from current resources", x + width / 2, listY + 30, TEXT_SECONDARY);
+            return;
+        }
+
+        int maxVisibleItems = getRecipeMaxVisibleItems();
+        int totalItems = filteredCraftable.size();
+        int end = Math.min(totalItems, scrollOffset + maxVisibleItems);
+        for (int i = scrollOffset; i < end; i++) {
+            CraftableScanner.CraftableEntry entry = filteredCraftable.get(i);
+            int itemY = listY + (i - scrollOffset) * lineHeight;
+            context.fill(x, itemY, x + width - 16, itemY + lineHeight - 2, (i % 2 == 0) ? ITEM_BG : ITEM_BG_ALT);
+            if (isMouseOver(x, itemY, width - 16, lineHeight - 2)) {
+                context.fill(x, itemY, x + width - 16, itemY + lineHeight - 2, 0x32FFFFFF);
+            }
+
+            String name = entry.name;
+            hits.add(x, itemY, width - 16, lineHeight - 2, HIT_CRAFTABLE, entry.maxCraftable, name);
+
+            String amountText = "up to " + entry.maxCraftable + "×";
+            int amountWidth = font.width(amountText);
+            String displayName = name;
+            int maxWidth = width - amountWidth - 50;
+            if (font.width(displayName) > maxWidth) {
+                displayName = font.plainSubstrByWidth(displayName, maxWidth - font.width("...")) + "...";
+            }
+            int textY = itemY + (lineHeight - font.lineHeight) / 2;
+            context.drawString(font, displayName, x + 8, textY, WHITE, false);
+            context.drawString(font, amountText, x + width - 16 - amountWidth - 8, textY, SUCCESS_GREEN, false);
+        }
+
+        if (totalItems > maxVisibleItems) {
+            int scrollbarWidth = 6;
+            int scrollbarX = x + width - 10;
+            int listHeight = contentY + contentHeight - listY;
+            context.fill(scrollbarX, listY, scrollbarX + scrollbarWidth, listY + listHeight, ITEM_BG_ALT);
+            int thumbHeight = Math.max(10, listHeight * maxVisibleItems / totalItems);
+            int thumbY = listY + (scrollOffset * (listHeight - thumbHeight) / (totalItems - maxVisibleItems));
+            context.fill(scrollbarX, thumbY, scrollbarX + scrollbarWidth, thumbY + thumbHeight, BORDER_COLOR);
+        }
+    }
+
+    private void renderFindItems(GuiGraphics context, int contentX, int contentY, int contentWidth, int contentHeight) {
+        refreshFindRows();
+
+        int x = contentX + 10;
+        int width = contentWidth - 20;
+        int listY = contentY + 10;
+        int lineHeight = 24;
+
+        context.fill(x, listY, x + width, listY + 24, TITLE_BG);
+        drawBorder(context, x, listY, width, 24, BORDER_COLOR);
+        context.drawString(font, "Where is it stored?", x + 10, listY + 8, GOLD, false);
+        listY += 30;
+
+        if (findSearchTerm.isBlank()) {
+            drawCenteredText(context, "Type an item name to see which containers hold it", x + width / 2, listY + 30, TEXT_SECONDARY);
+            return;
+        }
+        if (findRows.isEmpty()) {
+            drawCenteredText(context, "No stored item matches", x + width / 2, listY + 30, TEXT_SECONDARY);
+            return;
+        }
+
+        int maxVisibleItems = getRecipeMaxVisibleItems();
+        int totalItems = findRows.size();
+        int end = Math.min(totalItems, scrollOffset + maxVisibleItems);
+        for (int i = scrollOffset; i < end; i++) {
+            FindRow row = findRows.get(i);
+            int itemY = listY + (i - scrollOffset) * lineHeight;
+            context.fill(x, itemY, x + width - 16, itemY + lineHeight - 2, row.header ? ITEM_BG_ALT : ITEM_BG);
+
+            String amountText = row.count + "×";
+            int amountWidth = font.width(amountText);
+            int labelX = row.header ? x + 8 : x + 24;
+            String label = row.label;
+            int maxWidth = width - amountWidth - 50 - (labelX - x);
+            if (font.width(label) > maxWidth) {
+                label = font.plainSubstrByWidth(label, maxWidth - font.width("...")) + "...";
+            }
+            int textY = itemY + (lineHeight - font.lineHeight) / 2;
+            context.drawString(font, label, labelX, textY, row.header ? WHITE : TEXT_SECONDARY, false);
+            context.drawString(font, amountText, x + width - 16 - amountWidth - 8, textY, row.header ? GOLD : TEXT_SECONDARY, false);
+        }
+
+        if (totalItems > maxVisibleItems) {
+            int scrollbarWidth = 6;
+            int scrollbarX = x + width - 10;
+            int listHeight = contentY + contentHeight - listY;
+            context.fill(scrollbarX, listY, scrollbarX + scrollbarWidth, listY + listHeight, ITEM_BG_ALT);
+            int thumbHeight = Math.max(10, listHeight * maxVisibleItems / totalItems);
+            int thumbY = listY + (scrollOffset * (listHeight - thumbHeight) / (totalItems - maxVisibleItems));
+            context.fill(scrollbarX, thumbY, scrollbarX + scrollbarWidth, thumbY + thumbHeight, BORDER_COLOR);
+        }
     }
 
     private void renderRecipeList(GuiGraphics context, int x, int y, int width, int height) {
@@ -691,8 +974,7 @@ public class SandboxViewer extends Screen {
                     context.fill(x, itemY, x + width - 16, itemY + lineHeight - 2, 0x32FFFFFF);
                 }
                 
-                final String currentName = name;
-                clickableElements.add(new ClickableElement(x, itemY, width - 16, lineHeight - 2, () -> selectRecipe(currentName)));
+                hits.add(x, itemY, width - 16, lineHeight - 2, HIT_RECIPE, 0, name);
 
                 String displayName = name;
                 int maxWidth = width - 30;
@@ -756,7 +1038,7 @@ public class SandboxViewer extends Screen {
         {
             int tmpY = contentY + contentHeightMaterials + 10;
             tmpY += headerH + 6;
-            int dryEndY = renderRecipeTree(null, expandedRecipeTree, "", x + 15, tmpY + 4);
+            int dryEndY = renderRecipeTree(null, expandedRecipeTree, ExpansionState.ROOT, x + 15, tmpY + 4);
             contentHeightTree = (dryEndY - tmpY) + 4;
         }
 
@@ -800,7 +1082,7 @@ public class SandboxViewer extends Screen {
         context.fill(x, drawY, x + width, drawY + headerH, ITEM_BG_ALT);
         context.drawString(font, "Crafting Tree (Click to expand)", x + 10, drawY + 6, GOLD, false);
         drawY += headerH + 6;
-        drawY = renderRecipeTree(context, expandedRecipeTree, "", x + 15, drawY);
+        drawY = renderRecipeTree(context, expandedRecipeTree, ExpansionState.ROOT, x + 15, drawY);
 
         context.disableScissor();
 
@@ -880,7 +1162,7 @@ public class SandboxViewer extends Screen {
         {
             int tmpY = contentY + contentHeightMaterials + 10;
             tmpY += headerH + 6;
-            int dryEndY = renderRecipeTree(null, remainingResult != null ? remainingResult.full_recipe : null, "", x + 15, tmpY + 4);
+            int dryEndY = renderRecipeTree(null, remainingResult != null ? remainingResult.full_recipe : null, ExpansionState.ROOT, x + 15, tmpY + 4);
             contentHeightTree = (dryEndY - tmpY) + 4;
         }
 
@@ -923,7 +1205,7 @@ public class SandboxViewer extends Screen {
         context.fill(x, drawY, x + width, drawY + headerH, ITEM_BG_ALT);
         context.drawString(font, "Required Recipe Tree (Click to Expand)", x + 10, drawY + 6, GOLD, false);
         drawY += headerH + 6;
-        drawY = renderRecipeTree(context, remainingResult != null ? remainingResult.full_recipe : null, "", x + 15, drawY);
+        drawY = renderRecipeTree(context, remainingResult != null ? remainingResult.full_recipe : null, ExpansionState.ROOT, x + 15, drawY);
 
         context.disableScissor();
 
@@ -939,29 +1221,16 @@ public class SandboxViewer extends Screen {
         }
     }
 
-    private int renderRecipeTree(GuiGraphics context, Object nodeObj, String path, int x, int y) {
-        if (nodeObj == null) return y;
+    private int renderRecipeTree(GuiGraphics context, RecipeManager.RecipeNode node, long parentPath, int x, int y) {
+        if (node == null) return y;
 
         int lineHeight = 24;
-        String name;
-        int amount;
-        List<?> ingredients;
-
-        if (nodeObj instanceof RecipeManager.RecipeNode node) {
-            name = node.name;
-            amount = node.amount;
-            ingredients = node.ingredients;
-        } else if (nodeObj instanceof ResourcesManager.RecipeNode node) {
-            name = node.name;
-            amount = node.amount;
-            ingredients = node.ingredients;
-        } else {
-            return y;
-        }
+        String name = node.name;
+        int amount = node.amount;
 
-        String fullPath = path + name;
-        boolean isExpanded = expandedNodes.getOrDefault(fullPath, false);
-        boolean hasIngredients = ingredients != null && !ingredients.isEmpty();
+        long fullPath = ExpansionState.child(parentPath, name);
+        boolean isExpanded = treeExpansion.isExpanded(fullPath);
+        boolean hasIngredients = node.hasIngredients();
 
         int textColor = WHITE;
         if (mode == Mode.FORGE_MODE && amount > 0) {
@@ -977,7 +1246,7 @@ public class SandboxViewer extends Screen {
                 context.fill(x - 5, y, x + nodeWidth, y + lineHeight, SELECTED_BG);
             }
             if (hasIngredients) {
-                clickableElements.add(new ClickableElement(x - 5, y, nodeWidth, lineHeight, () -> toggleNodeExpanded(fullPath)));
+                hits.add(x - 5, y, nodeWidth, lineHeight, HIT_TREE_NODE, fullPath, null);
             }
             context.drawString(font, amount + "×", x + 15, y + (lineHeight - font.lineHeight) / 2, GOLD, false);
             context.drawString(font, name, x + 15 + font.width(amount + "×") + 5, y + (lineHeight - font.lineHeight) / 2, textColor, false);
@@ -986,8 +1255,8 @@ public class SandboxViewer extends Screen {
         if (isExpanded && hasIngredients) {
             int childY = y + lineHeight + 2;
             int indent = 24;
-            for (Object child : ingredients) {
-                int nextY = renderRecipeTree(context, child, fullPath + ".", x + indent, childY);
+            for (RecipeManager.RecipeNode child : node.getIngredients()) {
+                int nextY = renderRecipeTree(context, child, fullPath, x + indent, childY);
                 childY = nextY + 4;
             }
             endY = childY - 4;
@@ -1005,6 +1274,13 @@ public class SandboxViewer extends Screen {
         return false;
     }
 
+    @Override
+    public void removed() {
+        // The HUD toggle and recipe picks here change widget settings; don't leave them pending
+        SandboxWidget.getInstance().flushConfiguration();
+        super.removed();
+    }
+
     @Override
     public boolean shouldCloseOnEsc() {
         return true;
@@ -1018,13 +1294,6 @@ public class SandboxViewer extends Screen {
         int leftPanelWidth = contentWidth - 200;
         int rightPanelX = contentX + leftPanelWidth + 20;
         
-        Set<String> currentResourceKeys = new HashSet<>();
-        for (ResourcesManager.ResourceEntry resource : filteredResources) {
-            currentResourceKeys.add(resource.name);
-        }
-        
-        resourceAmountFields.entrySet().removeIf(entry -> !currentResourceKeys.contains(entry.getKey()));
-        
         context.fill(contentX + leftPanelWidth + 10, contentY, contentX + leftPanelWidth + 11, contentY + contentHeight, BORDER_COLOR);
         
         int gridStartY = contentY + 35;
@@ -1045,6 +1314,7 @@ public class SandboxViewer extends Screen {
 
         if (totalItems == 0) {
             drawCenteredText(context, "No resources found", contentX + leftPanelWidth / 2, listStartY + 30, TEXT_SECONDARY);
+            unbindAmountRows(0);
             return;
         }
 
@@ -1068,65 +1338,11 @@ public class SandboxViewer extends Screen {
             
             context.drawString(font, resource.name, x + 5, y + 7, WHITE, false);
             
-            final String resourceKey = resource.name;
             int amountFieldWidth = 60;
             int amountFieldX = x + leftPanelWidth - 140;
             int amountFieldY = y + 2;
             
-            EditBox amountField = resourceAmountFields.get(resourceKey);
-            if (amountField == null) {
-                final EditBox newField = new EditBox(font, amountFieldX, amountFieldY, amountFieldWidth, 16, Component.literal(""));
-                newField.setValue(String.valueOf(resource.amount));
-                newField.setMaxLength(10);
-                
-                newField.setResponder(text -> {
-                    try {
-                        int newAmount = text.isEmpty() ? 0 : Integer.parseInt(text);
-                        if (newAmount >= 0) {
-                            ResourcesManager.ResourceEntry resourceEntry = filteredResources.stream()
-                                .filter(entry -> entry.name.equals(resourceKey))
-                                .findFirst()
-                                .orElse(null);
-                            
-                            if (resourceEntry != null) {
-                                resourceEntry.amount = newAmount;
-                                updateSelectedResource(resourceEntry);
-                            }
-                        }
-                    } catch (NumberFormatException e) {
-                        ResourcesManager.ResourceEntry resourceEntry = filteredResources.stream()
-                            .filter(entry -> entry.name.equals(resourceKey))
-                            .findFirst()
-                            .orElse(null);
-                        
-                        if (resourceEntry != null && resourceAmountFields.containsKey(resourceKey)) {
-                            EditBox fieldToUpdate = resourceAmountFields.get(resourceKey);
-                            fieldToUpdate.setValue(String.valueOf(resourceEntry.amount));
-                        }
-                    }
-                });
-                
-                resourceAmountFields.put(resourceKey, newField);
-                amountField = newField;
-                
-
-                amountField.setBordered(true);
-            } else {
-                amountField.setX(amountFieldX);
-                amountField.setY(amountFieldY);
-                
-                String currentText = amountField.getValue();
-                int currentAmount;
-                try {
-                    currentAmount = currentText.isEmpty() ? 0 : Integer.parseInt(currentText);
-                } catch (NumberFormatException e) {
-                    currentAmount = -1;
-                }
-                
-                if (currentAmount != resource.amount && !amountField.isFocused()) {
-                    amountField.setValue(String.valueOf(resource.amount));
-                }
-            }
+            EditBox amountField = amountRow(row, amountFieldX, amountFieldY, amountFieldWidth, resource).field;
             
             int fieldBgColor = amountField.isFocused() ? 0xFF404040 : 0xFF333333;
             int fieldBorderColor = amountField.isFocused() ? WHITE : BORDER_COLOR;
@@ -1152,13 +1368,12 @@ public class SandboxViewer extends Screen {
             context.drawString(font, "+", plusX + (buttonSize - font.width("+")) / 2, 
                              buttonY + (buttonSize - font.lineHeight) / 2, WHITE, false);
             
-            final int resourceIndex = i;
-            clickableElements.add(new ClickableElement(minusX, buttonY, buttonSize, buttonSize, 
-                                                      () -> decrementResource(resourceIndex)));
-            clickableElements.add(new ClickableElement(plusX, buttonY, buttonSize, buttonSize, 
-                                                      () -> incrementResource(resourceIndex)));
+            hits.add(minusX, buttonY, buttonSize, buttonSize, HIT_RESOURCE_MINUS, i, null);
+            hits.add(plusX, buttonY, buttonSize, buttonSize, HIT_RESOURCE_PLUS, i, null);
         }
         
+        unbindAmountRows(Math.min(startIndex + maxVisibleItems, totalItems) - startIndex);
+
         int modifiedY = contentY + 55;
         int modifiedCount = 0;
         for (ResourcesManager.ResourceEntry entry : selectedResources) {
@@ -1193,6 +1408,89 @@ public class SandboxViewer extends Screen {
         }
     }
     
+    /** Returns pooled row {@code row}, moved into place and bound to {@code resource}. */
+    private AmountRow amountRow(int row, int x, int y, int width, ResourcesManager.ResourceEntry resource) {
+        while (amountRows.size() <= row) {
+            AmountRow created = new AmountRow(new EditBox(font, x, y, width, 16, Component.literal("")));
+            created.field.setMaxLength(10);
+            created.field.setBordered(true);
+            created.field.setResponder(text -> onAmountFieldChanged(created, text));
+            amountRows.add(created);
+        }
+        AmountRow r = amountRows.get(row);
+        r.field.setX(x);
+        r.field.setY(y);
+        if (!resource.name.equals(r.boundName)) {
+            r.boundName = resource.name;
+            r.field.setFocused(resource.name.equals(activeTextField));
+            r.show(resource.amount);
+        } else if (r.shownAmount != resource.amount && !r.field.isFocused()) {
+            r.show(resource.amount);
+        }
+        return r;
+    }
+
+    /** Detaches pooled rows from {@code from} on, so hidden rows can't take clicks or focus. */
+    private void unbindAmountRows(int from) {
+        for (int i = Math.max(0, from); i < amountRows.size(); i++) {
+            AmountRow r = amountRows.get(i);
+            if (r.boundName == null) continue;
+            r.boundName = null;
+            r.field.setFocused(false);
+        }
+    }
+
+    private void onAmountFieldChanged(AmountRow row, String text) {
+        if (row.binding || row.boundName == null) return;
+        ResourcesManager.ResourceEntry entry = resourceIndex.get(row.boundName);
+        if (entry == null) return;
+        try {
+            int newAmount = text.isEmpty() ? 0 : Integer.parseInt(text);
+            if (newAmount >= 0) {
+                entry.amount = newAmount;
+                row.shownAmount = newAmount;
+                updateSelectedResource(entry);
+            }
+        } catch (NumberFormatException e) {
+            row.show(entry.amount);
+        }
+    }
+
+    /** One line of the find panel: an item with its total, or one location holding it. */
+    private static final class FindRow {
+        final String label;
+        final int count;
+        final boolean header;
+
+        FindRow(String label, int count, boolean header) {
+            this.label = label;
+            this.count = count;
+            this.header = header;
+        }
+    }
+
+    private static final class AmountRow {
+        final EditBox field;
+        String boundName;
+        int shownAmount;
+        // Set while the value is changed programmatically so the responder ignores it
+        boolean binding;
+
+        AmountRow(EditBox field) {
+            this.field = field;
+        }
+
+        void show(int amount) {
+            binding = true;
+            try {
+                field.setValue(String.valueOf(amount));
+            } finally {
+                binding = false;
+            }
+            shownAmount = amount;
+        }
+    }
+
     private void incrementResource(int index) {
         if (index >= 0 && index < filteredResources.size()) {
             ResourcesManager.ResourceEntry resource = filteredResources.get(index);
@@ -5,81 +5,158 @@ import com.google.gson.GsonBuilder;
 import net.fabricmc.fabric.api.client.rendering.v1.hud.HudElementRegistry;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.Style;
 import net.minecraft.resources.Identifier;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SandboxWidget {
     private static final Identifier SANDBOX_WIDGET_LAYER = Identifier.fromNamespaceAndPath(InventoryReader.MOD_ID, "sandbox_widget");
-    private static final int DARK_PANEL_BG = 0x99271910;
-    private static final int HEADER_BG = 0xCC2C4A1B;
-    private static final int GOLD = 0xFFFFB728;
-    private static final int RECIPE_LEVEL_INDENT = 10;
     private static final SandboxWidget INSTANCE = new SandboxWidget();
-    private boolean enabled = false;
-    private String selectedRecipe = null;
-    private RecipeManager.RecipeNode recipeTree = null;
+    // What the plan is computed from; replaced wholesale and numbered so stale plans can be dropped
+    private volatile PlanInputs inputs = PlanInputs.DEFAULT;
     private int widgetX = 10;
     private int widgetY = 40;
     private int widgetWidth = 250;
     private int widgetHeight = 300;
     private boolean isRepositioning = false;
-    private Map<String, Boolean> expandedNodes = new HashMap<>();
-    private final List<String> messages = new CopyOnWriteArrayList<>();
-    private int craftAmount = 1;
+    // Immutable and replaced wholesale, so the render thread never sees a half-built plan
+    private volatile PlanView view = PlanView.EMPTY;
+    // Serializes read-modify-write of view; readers just take the reference
+    private final Object viewLock = new Object();
     private final ResourcesManager resourcesManager;
-    private final ScheduledExecutorService scheduler;
-    private int currentNodeLineHeight = 16;
-    private float currentTreeScale = 1.0f;
+    // Refreshes run one at a time, in order, on the shared CPU pool
+    private final Executor refreshLane;
+    private final List<CraftQueuePlanner.QueueTarget> craftQueue = new CopyOnWriteArrayList<>();
+    private volatile CraftQueuePlanner.QueuePlan queuePlan = null;
+    // Numbers queue plan requests like PlanSlot does; only the newest may publish its plan
+    private final AtomicLong queueSequence = new AtomicLong();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean(false);
+    // Retained HUD layout; rebuilt on the render thread whenever layoutGeneration moves on
+    private volatile HudLayout layout = null;
+    private final AtomicInteger layoutGeneration = new AtomicInteger();
+    // Config writes wait for this much quiet so drags and click bursts end up as one write
+    private static final long CONFIG_SAVE_DELAY_MS = 750;
+    private final Object configLock = new Object();
+    private boolean configDirty = false;
+    private ScheduledFuture<?> pendingConfigSave = null;
 
     private SandboxWidget() {
         this.resourcesManager = ResourcesManager.getInstance();
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.refreshLane = IrRuntime.getInstance().serial("widget.refresh");
         HudElementRegistry.addLast(SANDBOX_WIDGET_LAYER, (context, tickCounter) -> {
-            if (enabled && selectedRecipe != null && recipeTree != null) {
-                render(context);
-            }
+            if (!inputs.enabled) return;
+            Minecraft client = Minecraft.getInstance();
+            long start = System.nanoTime();
+            HudLayout current = currentLayout(client);
+            int mouseX = (int)(client.mouseHandler.xpos() / client.getWindow().getGuiScale());
+            int mouseY = (int)(client.mouseHandler.ypos() / client.getWindow().getGuiScale());
+            current.draw(context, client.font, mouseX, mouseY);
+            // CPU time spent recording this frame's draw commands; GPU cost is not measured
+            IrMetrics.recordNanos("hud.frame.record", System.nanoTime() - start);
         });
-        scheduler.scheduleAtFixedRate(this::updateRecipeData, 0, 1, TimeUnit.SECONDS);
+        // Re-plan when resources or recipes actually change instead of polling every second
+        resourcesManager.addChangeListener(this::requestRefresh);
+        RecipeManager.getInstance().addReloadListener(this::requestRefresh);
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> flushConfiguration());
         loadConfiguration();
+        requestRefresh();
+    }
+
+    /**
+     * Coalesces bursts of change notifications and input edits into a single re-plan on the
+     * widget's lane, computed from whatever inputs are current when it runs.
+     */
+    private void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            IrRuntime.getInstance().schedule("widget.refresh", () -> {
+                refreshQueued.set(false);
+                try {
+                    updateRecipeData(inputs);
+                    requestQueuePlan();
+                } catch (Exception e) {
+                    InventoryReader.LOGGER.error("Failed to refresh widget data", e);
+                }
+            }, 100, TimeUnit.MILLISECONDS, refreshLane);
+        }
+    }
+
+    /** Marks the HUD layout stale; the next frame rebuilds it. */
+    private void invalidateLayout() {
+        layoutGeneration.incrementAndGet();
+    }
+
+    private HudLayout currentLayout(Minecraft client) {
+        int screenWidth = client.getWindow().getGuiScaledWidth();
+        int screenHeight = client.getWindow().getGuiScaledHeight();
+        HudLayout current = layout;
+        int generation = layoutGeneration.get();
+        if (current != null && current.generation == generation
+                && current.screenWidth == screenWidth && current.screenHeight == screenHeight) {
+            return current;
+        }
+        long start = System.nanoTime();
+        HudLayout.Inputs in = new HudLayout.Inputs();
+        in.generation = generation;
+        in.screenWidth = screenWidth;
+        in.screenHeight = screenHeight;
+        in.widgetX = widgetX;
+        in.widgetY = widgetY;
+        in.widgetWidth = widgetWidth;
+        in.widgetHeight = widgetHeight;
+        in.repositioning = isRepositioning;
+        PlanView v = view;
+        in.selectedRecipe = v.recipe;
+        in.recipeTree = v.tree;
+        in.expansion = v.expansion;
+        in.messages = v.messages;
+        in.queuePlan = craftQueue.isEmpty() ? null : queuePlan;
+        current = HudLayout.build(in, client.font);
+        IrMetrics.recordNanos("hud.layout.build", System.nanoTime() - start);
+        layout = current;
+        return current;
     }
 
     public static SandboxWidget getInstance() {
         return INSTANCE;
     }
     public void setEnabled(boolean enabled) {
-        this.enabled = enabled;
-        if (!enabled) {
-            this.recipeTree = null;
-        } else {
-            if (this.selectedRecipe != null && !this.selectedRecipe.isEmpty()) {
-                updateRecipeData();
+        synchronized (viewLock) {
+            PlanInputs current = inputs;
+            inputs = current.next(enabled, current.recipe, current.amount);
+            if (!enabled) {
+                // Clear right away; any plan still in flight carries an older generation and is dropped
+                view = PlanView.EMPTY.withExpansion(view.expansion).at(inputs.generation);
             }
         }
+        if (enabled) requestRefresh();
+        invalidateLayout();
         saveConfiguration();
     }
     public boolean isEnabled() {
-        return this.enabled;
+        return inputs.enabled;
     }
     public void setSelectedRecipe(String recipeName) {
-        this.selectedRecipe = recipeName;
-        if (recipeName != null) {
-            expandedNodes.put(recipeName, true);
+        synchronized (viewLock) {
+            PlanInputs current = inputs;
+            inputs = current.next(current.enabled, recipeName, current.amount);
         }
-        updateRecipeData();
+        requestRefresh();
+        invalidateLayout();
         saveConfiguration();
     }
     public String getSelectedRecipe() {
-        return this.selectedRecipe;
+        return inputs.recipe;
     }
     public int getWidgetX() {
         return widgetX;
@@ -90,6 +167,7 @@ public class SandboxWidget {
     public void setWidgetPosition(int x, int y) {
         this.widgetX = x;
         this.widgetY = y;
+        invalidateLayout();
         saveConfiguration();
     }
     public int getWidgetWidth() { return widgetWidth; }
@@ -100,56 +178,109 @@ public class SandboxWidget {
         int screenH = client.getWindow().getGuiScaledHeight();
         this.widgetWidth = Math.max(180, Math.min(width, screenW - 20));
         this.widgetHeight = Math.max(120, Math.min(height, screenH - 20));
+        invalidateLayout();
         saveConfiguration();
     }
-    public static String getNodeKey(RecipeManager.RecipeNode node) {
-        return node.name + "_" + node.amount;
+    /** Parent path ID of the tree shown for {@code recipe}; its root node sits one step below. */
+    public static long rootPath(String recipe) {
+        return ExpansionState.child(ExpansionState.ROOT, recipe);
     }
-    public boolean isNodeExpanded(String nodeKey) {
-        if (expandedNodes == null) {
-            expandedNodes = new HashMap<>();
-            return false;
-        }
-        
-        Boolean result = expandedNodes.getOrDefault(nodeKey, false);
-        return result != null ? result : false;
+    public static long rootNodePath(String recipe, RecipeManager.RecipeNode root) {
+        return ExpansionState.child(rootPath(recipe), root.name);
+    }
+    public boolean isNodeExpanded(long path) {
+        return view.expansion.isExpanded(path);
     }
-    public void setNodeExpansion(String nodeKey, boolean expanded) {
-        expandedNodes.put(nodeKey, expanded);
+    public void setNodeExpansion(long path, boolean expanded) {
+        updateExpansion(path, expanded);
     }
-    public void toggleNodeExpansion(String nodeKey) {
-        if (expandedNodes == null) {
-            expandedNodes = new HashMap<>();
+    public void toggleNodeExpansion(long path) {
+        updateExpansion(path, null);
+        saveConfiguration();
+    }
+
+    /** Sets or (with {@code expanded == null}) flips one node; readers keep whatever state they already hold. */
+    private void updateExpansion(long path, Boolean expanded) {
+        synchronized (viewLock) {
+            ExpansionState current = view.expansion;
+            view = view.withExpansion(expanded == null ? current.toggled(path) : current.with(path, expanded));
         }
-        
-        Boolean currentState = expandedNodes.getOrDefault(nodeKey, false);
-        if (currentState == null) {
-            currentState = false;
+        invalidateLayout();
+    }
+
+    /** Opens a node by default, unless the user has already opened or closed it. */
+    public void expandIfUntouched(long path) {
+        synchronized (viewLock) {
+            if (view.expansion.contains(path)) return;
+            view = view.withExpansion(view.expansion.with(path, true));
+        }
+        invalidateLayout();
+    }
+
+    /** Drops expansion entries for paths that no longer exist in any recipe. */
+    private ExpansionState prunedExpansion() {
+        synchronized (viewLock) {
+            ExpansionState current = view.expansion;
+            ExpansionState pruned = current.retainReachable(RecipeManager.getInstance().getRecipeMap(), SandboxWidget::rootPath);
+            if (pruned != current) {
+                InventoryReader.LOGGER.debug("Pruned {} stale expansion entries", current.size() - pruned.size());
+                view = view.withExpansion(pruned);
+            }
+            return pruned;
         }
-        
-        boolean newState = !currentState;
-        expandedNodes.put(nodeKey, newState);
-        saveConfiguration();
     }
+    /**
+     * Marks the configuration dirty. The write happens on an I/O thread once no further
+     * change has arrived for {@link #CONFIG_SAVE_DELAY_MS}; {@link #flushConfiguration()}
+     * forces it out early.
+     */
     public void saveConfiguration() {
+        synchronized (configLock) {
+            configDirty = true;
+            if (pendingConfigSave != null) {
+                pendingConfigSave.cancel(false);
+                IrMetrics.increment("widget.config.coalesced");
+            }
+            IrRuntime runtime = IrRuntime.getInstance();
+            pendingConfigSave = runtime.schedule("widget.config_save", this::flushConfiguration, CONFIG_SAVE_DELAY_MS, TimeUnit.MILLISECONDS, runtime.io());
+        }
+    }
+
+    /** Writes the configuration now if it has unsaved changes; called on screen close and client shutdown. */
+    public void flushConfiguration() {
+        synchronized (configLock) {
+            if (!configDirty) return;
+            configDirty = false;
+            if (pendingConfigSave != null) {
+                pendingConfigSave.cancel(false);
+                pendingConfigSave = null;
+            }
+        }
+        writeConfiguration();
+    }
+
+    private synchronized void writeConfiguration() {
+        long start = System.nanoTime();
         try {
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            ExpansionState expansion = prunedExpansion();
+            PlanInputs in = inputs;
             WidgetConfig config = new WidgetConfig(
-                enabled,
-                selectedRecipe,
+                in.enabled,
+                in.recipe,
                 widgetX,
                 widgetY,
                 widgetWidth,
                 widgetHeight,
-                expandedNodes,
-                craftAmount
+                expansion.ids(),
+                expansion.expandedBits(),
+                in.amount,
+                new ArrayList<>(craftQueue)
             );
-            FilePathManager.file_widget_config.getParentFile().mkdirs();
-            try (FileWriter writer = new FileWriter(FilePathManager.file_widget_config)) {
-                gson.toJson(config, writer);
-            }
-            InventoryReader.LOGGER.info("Widget configuration saved");
-        } catch (IOException e) {
+            ResourcesManager.atomicWriteJson(FilePathManager.file_widget_config, gson.toJson(config));
+            IrMetrics.recordNanos("widget.config.write", System.nanoTime() - start);
+            InventoryReader.LOGGER.debug("Widget configuration saved");
+        } catch (RuntimeException e) {
             InventoryReader.LOGGER.error("Failed to save widget configuration", e);
         }
     }
@@ -163,22 +294,24 @@ public class SandboxWidget {
             try (FileReader reader = new FileReader(FilePathManager.file_widget_config)) {
                 WidgetConfig config = gson.fromJson(reader, WidgetConfig.class);
                 if (config != null) {
-                    this.enabled = config.enabled;
-                    this.selectedRecipe = config.selectedRecipe;
+                    // Planned by the refresh the constructor requests once loading is done
+                    this.inputs = PlanInputs.DEFAULT.next(config.enabled, config.selectedRecipe,
+                            config.craftAmount > 0 ? config.craftAmount : 1);
                     this.widgetX = config.widgetX;
                     this.widgetY = config.widgetY;
-                    if (config.expandedNodes != null) {
-                        this.expandedNodes = config.expandedNodes;
-                    }
-                    if (config.craftAmount > 0) {
-                        this.craftAmount = config.craftAmount;
+                    if (config.expansionIds != null) {
+                        this.view = view.withExpansion(ExpansionState.restore(config.expansionIds, config.expansionOpen));
+                    } else if (config.expandedNodes != null) {
+                        this.view = view.withExpansion(migrateExpandedNodes(config.expandedNodes));
                     }
                     if (config.widgetWidth > 0) this.widgetWidth = config.widgetWidth;
                     if (config.widgetHeight > 0) this.widgetHeight = config.widgetHeight;
-                    InventoryReader.LOGGER.info("Widget configuration loaded");
-                    if (selectedRecipe != null) {
-                        updateRecipeData();
+                    if (config.craftQueue != null) {
+                        for (CraftQueuePlanner.QueueTarget target : config.craftQueue) {
+                            if (target != null && target.recipe != null && target.amount > 0) craftQueue.add(target);
+                        }
                     }
+                    InventoryReader.LOGGER.info("Widget configuration loaded");
                 }
             }
         } catch (IOException | com.google.gson.JsonSyntaxException e) {
@@ -192,23 +325,32 @@ public class SandboxWidget {
         int widgetY;
     int widgetWidth;
     int widgetHeight;
+        /** Every tree node the user opened or closed, as sorted path IDs. */
+        long[] expansionIds;
+        /** Bitset over expansionIds marking the open ones. */
+        long[] expansionOpen;
+        /** Pre-path-ID format, only read to migrate old configs. */
         Map<String, Boolean> expandedNodes;
         int craftAmount;
+        List<CraftQueuePlanner.QueueTarget> craftQueue;
     public WidgetConfig(boolean enabled, String selectedRecipe, int widgetX, int widgetY, int widgetWidth, int widgetHeight,
-                Map<String, Boolean> expandedNodes, int craftAmount) {
+                long[] expansionIds, long[] expansionOpen, int craftAmount, List<CraftQueuePlanner.QueueTarget> craftQueue) {
             this.enabled = enabled;
             this.selectedRecipe = selectedRecipe;
             this.widgetX = widgetX;
             this.widgetY = widgetY;
         this.widgetWidth = widgetWidth;
         this.widgetHeight = widgetHeight;
-            this.expandedNodes = expandedNodes;
+            this.expansionIds = expansionIds;
+            this.expansionOpen = expansionOpen;
             this.craftAmount = craftAmount;
+            this.craftQueue = craftQueue;
         }
     }
     public void startRepositioning() {
-        if (enabled) {
+        if (inputs.enabled) {
             isRepositioning = true;
+            invalidateLayout();
             Minecraft client = Minecraft.getInstance();
             client.mouseHandler.releaseMouse();
             if (client.player != null) {
@@ -226,6 +368,7 @@ public class SandboxWidget {
     public void stopRepositioning() {
         if (isRepositioning) {
             isRepositioning = false;
+            invalidateLayout();
             Minecraft.getInstance().mouseHandler.grabMouse();
             InventoryReader.LOGGER.info("Widget repositioning mode deactivated");
             saveConfiguration();
@@ -239,6 +382,7 @@ public class SandboxWidget {
             widgetX = (int)mouseX;
             widgetY = (int)mouseY;
             isRepositioning = false;
+            invalidateLayout();
             Minecraft client = Minecraft.getInstance();
             if (client.player != null) {
                 Component message = Component.literal("Widget position set: X:" + widgetX + ", Y:" + widgetY)
@@ -247,507 +391,228 @@ public class SandboxWidget {
                 client.mouseHandler.grabMouse();
             }
             return true;
-        } else if (enabled && selectedRecipe != null && recipeTree != null) {
+        } else if (inputs.enabled && view.tree != null) {
             return handleTreeNodeClick(mouseX, mouseY);
         }
         return false;
     }
     private boolean handleTreeNodeClick(double mouseX, double mouseY) {
-        int panelWidth = widgetWidth;
-        int panelX = widgetX;
-        int panelY = widgetY;
-        if (mouseX < panelX || mouseX > panelX + panelWidth) {
+        // Rows come from the layout that is on screen, so clicks always match what was drawn
+        HitIndex hits = currentLayout(Minecraft.getInstance()).hits;
+        int slot = hits.find(mouseX, mouseY);
+        if (slot < 0 || hits.kind(slot) != HudLayout.HIT_NODE) {
             return false;
         }
-        int y = panelY + 20;
-        return checkNodeClick(recipeTree, mouseX, mouseY, panelX, y, 0, selectedRecipe);
-    }
-    private boolean checkNodeClick(RecipeManager.RecipeNode node, double mouseX, double mouseY, int x, int y, int level, String pathKey) {
-        if (node == null) return false;
-    int unitIndent = Math.max(4, Math.round(RECIPE_LEVEL_INDENT * currentTreeScale));
-    int indent = level * unitIndent;
-    int nodeHeight = Math.max(6, currentNodeLineHeight);
-        boolean hasChildren = node.ingredients != null && !node.ingredients.isEmpty();
-        int nodeWidth = Math.max(100, widgetWidth - 20) - indent;
-        if (mouseY >= y && mouseY <= y + nodeHeight) {
-            if (mouseX >= x + indent && mouseX <= x + indent + nodeWidth) {
-                String nodeKey = makePathKey(pathKey, node.name);
-                if (hasChildren) {
-                    boolean expanded = expandedNodes.getOrDefault(nodeKey, false);
-                    expandedNodes.put(nodeKey, !expanded);
-                    return true;
-                } else {
-                    Minecraft client = Minecraft.getInstance();
-                    Map<String, Integer> resources = resourcesManager.getAllResources();
-                    int available = resources.getOrDefault(node.name, 0);
-                    int remainingNeeded = node.amount;
-                    boolean hasEnough = remainingNeeded == 0;
-                    Component message = Component.literal("You need " + remainingNeeded + " more " + node.name + " (Have: " + available + ")")
-                        .setStyle(Style.EMPTY.withColor(hasEnough ? ChatFormatting.GREEN : ChatFormatting.RED));
-                    if (client.player != null) {
-                        client.player.displayClientMessage(message, true);
-                    }
-                    return true;
-                }
-            }
-        }
-        y += nodeHeight;
-    if (hasChildren && expandedNodes.getOrDefault(makePathKey(pathKey, node.name), false)) {
-            for (RecipeManager.RecipeNode child : node.ingredients) {
-        boolean childClicked = checkNodeClick(child, mouseX, mouseY, x, y, level + 1, makePathKey(pathKey, node.name));
-                if (childClicked) return true;
-        y += getExpandedNodeHeight(child, makePathKey(pathKey, node.name)) * Math.max(6, currentNodeLineHeight) / 16;
-            }
+        RecipeManager.RecipeNode node = (RecipeManager.RecipeNode) hits.ref(slot);
+        if (node.hasIngredients()) {
+            updateExpansion(hits.arg(slot), null);
+            return true;
         }
-        return false;
-    }
-    private int getExpandedNodeHeight(RecipeManager.RecipeNode node, String pathKey) {
-        if (node == null) return 0;
-        int height = 16;
-        if (node.ingredients != null && !node.ingredients.isEmpty() && 
-        expandedNodes.getOrDefault(makePathKey(pathKey, node.name), false)) {
-        for (RecipeManager.RecipeNode child : node.ingredients) {
-        height += getExpandedNodeHeight(child, makePathKey(pathKey, node.name));
-            }
+        Minecraft client = Minecraft.getInstance();
+        Map<String, Integer> resources = resourcesManager.getSnapshot();
+        int available = resources.getOrDefault(node.name, 0);
+        int remainingNeeded = node.amount;
+        boolean hasEnough = remainingNeeded == 0;
+        Component message = Component.literal("You need " + remainingNeeded + " more " + node.name + " (Have: " + available + ")")
+            .setStyle(Style.EMPTY.withColor(hasEnough ? ChatFormatting.GREEN : ChatFormatting.RED));
+        if (client.player != null) {
+            client.player.displayClientMessage(message, true);
         }
-        return height;
+        return true;
     }
 
-    private void updateRecipeData() {
-        if (!enabled || selectedRecipe == null) {
+    /** Plans {@code in} on the refresh lane; the result is dropped if newer inputs were published meanwhile. */
+    private void updateRecipeData(PlanInputs in) {
+        String recipe = in.recipe;
+        int amount = in.amount;
+        if (!in.enabled || recipe == null) {
             return;
         }
-        
-        if (expandedNodes == null) {
-            expandedNodes = new HashMap<>();
-        }
-        
-        Map<String, Boolean> prevExpandedState = new HashMap<>(expandedNodes);
-        ResourcesManager.RemainingResponse response = resourcesManager.getRemainingIngredients(selectedRecipe, craftAmount);
-        
-        messages.clear();
-        
+
+        // Everything is built locally and published in one volatile write at the end
+        ResourcesManager.RemainingResponse response = resourcesManager.getRemainingIngredients(recipe, amount);
+        List<String> newMessages = new ArrayList<>();
+        newMessages.add("Craftable -");
         if (response.messages != null && !response.messages.isEmpty()) {
-            messages.add("Craftable -");
-            
             List<Map.Entry<String, Integer>> sortedEntries = new ArrayList<>(response.messages.entrySet());
             sortedEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
-            
             for (Map.Entry<String, Integer> entry : sortedEntries) {
                 if (entry.getValue() != null && entry.getValue() > 0) {
-                    messages.add("   " + entry.getValue() + "× " + entry.getKey());
+                    newMessages.add("   " + entry.getValue() + "× " + entry.getKey());
                 }
             }
         }
-        
-        
-        
-        recipeTree = convertResourceNodeToRecipeNode(response.full_recipe);
-        boolean craftable = false;
-        if (recipeTree != null && recipeTree.ingredients != null) {
-            craftable = recipeTree.ingredients.stream().allMatch(child -> child.amount <= 0);
-            if (craftable && messages.isEmpty()) {
-                addMessage("Craftable -");
-            } else if (!craftable && messages.isEmpty()) {
-                addMessage("Craftable -");
+
+        RecipeManager.RecipeNode tree = response.full_recipe;
+        synchronized (viewLock) {
+            if (in.generation < view.generation) {
+                IrMetrics.increment("widget.plan.superseded");
+                return;
             }
+            ExpansionState expansion = view.expansion;
+            // Open the root by default, unless the user has already opened or closed it
+            if (tree != null && !expansion.contains(rootNodePath(recipe, tree))) {
+                expansion = expansion.with(rootNodePath(recipe, tree), true);
+            }
+            view = new PlanView(in.generation, recipe, amount, tree, Collections.unmodifiableList(newMessages), expansion);
         }
-        if (recipeTree != null) {
-            expandedNodes.put(getNodeKey(recipeTree), true);
-            preserveNodeExpansionStates(recipeTree, prevExpandedState);
-        }
+        invalidateLayout();
     }
 
-    private RecipeManager.RecipeNode convertResourceNodeToRecipeNode(ResourcesManager.RecipeNode resourceNode) {
-        if (resourceNode == null) return null;
-        List<RecipeManager.RecipeNode> ingredients = new ArrayList<>();
-        if (resourceNode.ingredients != null) {
-            for (ResourcesManager.RecipeNode child : resourceNode.ingredients) {
-                ingredients.add(convertResourceNodeToRecipeNode(child));
-            }
+    /** The user's choices the recipe plan depends on, numbered in the order they were made. */
+    private static final class PlanInputs {
+        static final PlanInputs DEFAULT = new PlanInputs(0, false, null, 1);
+
+        final long generation;
+        final boolean enabled;
+        final String recipe;
+        final int amount;
+
+        PlanInputs(long generation, boolean enabled, String recipe, int amount) {
+            this.generation = generation;
+            this.enabled = enabled;
+            this.recipe = recipe;
+            this.amount = amount;
+        }
+
+        PlanInputs next(boolean enabled, String recipe, int amount) {
+            return new PlanInputs(generation + 1, enabled, recipe, amount);
         }
-        return new RecipeManager.RecipeNode(resourceNode.name, resourceNode.amount, ingredients);
     }
-    private void render(GuiGraphics context) {
-        if (!enabled || selectedRecipe == null || recipeTree == null) {
-            return;
+
+    /** Immutable snapshot of the widget's current plan and tree expansion, as shown by the HUD. */
+    private static final class PlanView {
+        static final PlanView EMPTY = new PlanView(0, null, 0, null, Collections.emptyList(), ExpansionState.EMPTY);
+
+        // Generation of the PlanInputs this view was planned from
+        final long generation;
+        final String recipe;
+        final int craftAmount;
+        final RecipeManager.RecipeNode tree;
+        final List<String> messages;
+        final ExpansionState expansion;
+
+        PlanView(long generation, String recipe, int craftAmount, RecipeManager.RecipeNode tree, List<String> messages, ExpansionState expansion) {
+            this.generation = generation;
+            this.recipe = recipe;
+            this.craftAmount = craftAmount;
+            this.tree = tree;
+            this.messages = messages;
+            this.expansion = expansion;
         }
-    Minecraft client = Minecraft.getInstance();
-    int height = client.getWindow().getGuiScaledHeight();
-    int panelWidth = widgetWidth;
-    int visibleLines = countVisibleRecipeTreeLines(recipeTree, selectedRecipe);
-    int panelMaxHeight = Math.min(height - 40, widgetHeight);
-
-    int recipeTreeHeightMax = Math.max(0, visibleLines * 16);
-    int messageLinesRaw = countMessageLines(client, panelWidth);
-    int availableForMessagesMax = Math.max(0, Math.min((int)(height * 0.4), panelMaxHeight - 20 - recipeTreeHeightMax - 15));
-    int messageSectionHeightEst = messageLinesRaw > 0 ? Math.min(messageLinesRaw * 10 + 20, availableForMessagesMax) : 0;
-
-    int availableTreeHeight1 = Math.max(0, panelMaxHeight - 22 - (messageSectionHeightEst > 0 ? (messageSectionHeightEst + 15) : 0));
-    int safeLines = Math.max(1, visibleLines);
-    int computedLine1 = safeLines > 0 ? Math.max(6, (int)Math.floor((float)availableTreeHeight1 / (float)safeLines)) : 16;
-    computedLine1 = Math.min(16, computedLine1);
-    int treeHeightActual = safeLines * computedLine1;
-
-    int availableForMessages2 = Math.max(0, Math.min((int)(height * 0.4), panelMaxHeight - 20 - treeHeightActual - 15));
-    int messageSectionHeight = messageLinesRaw > 0 ? Math.min(messageLinesRaw * 10 + 20, availableForMessages2) : 0;
-    int desiredPanelHeight = 20 + treeHeightActual + messageSectionHeight + 15;
-    int panelHeight = Math.min(panelMaxHeight, desiredPanelHeight);
-        
-        int panelX = widgetX;
-        int panelY = widgetY;
-        
-    context.fill(panelX, panelY, panelX + panelWidth, panelY + panelHeight, DARK_PANEL_BG);
-        
-        context.fill(panelX, panelY, panelX + panelWidth, panelY + 20, HEADER_BG);
-        
-        int borderColor = 0xFFDAA520;
-        int borderThickness = 2;
-        for (int i = 0; i < borderThickness; i++) {
-            drawBorder(
-                context,
-                panelX - i,
-                panelY - i, 
-                panelWidth + i * 2, 
-                panelHeight + i * 2, 
-                borderColor
-            );
+
+        PlanView withExpansion(ExpansionState next) {
+            return next == expansion ? this : new PlanView(generation, recipe, craftAmount, tree, messages, next);
         }
-        
-        Component title = Component.literal("Recipe: " + selectedRecipe)
-            .setStyle(Style.EMPTY.withColor(ChatFormatting.GOLD).withBold(true));
-        int titleWidth = client.font.width(title);
-        int maxTitleWidth = Math.max(20, panelWidth - 10);
-        float titleScale = titleWidth > maxTitleWidth ? (float)maxTitleWidth / (float)titleWidth : 1.0f;
-        context.pose().pushMatrix();
-        context.pose().translate(panelX + (panelWidth - Math.min(titleWidth, maxTitleWidth)) / 2f, panelY + 5);
-        context.pose().scale(titleScale, titleScale);
-        context.drawString(
-            client.font,
-            title,
-            0,
-            0,
-            0xFFFFFFFF,
-            false
-        );
-        context.pose().popMatrix();
 
-        if (isRepositioning) {
-            String repoText = "◆ Click to place widget ◆";
-            context.drawString(
-                client.font,
-                repoText,
-                panelX + panelWidth - client.font.width(repoText) - 5,
-                panelY + panelHeight - 12,
-                GOLD,
-                true
-            );
+        PlanView withMessages(List<String> next) {
+            return new PlanView(generation, recipe, craftAmount, tree, next, expansion);
         }
-        
-        context.fill(panelX, panelY + 19, panelX + panelWidth, panelY + 20, 0x99608C35);
-        
-    int y = panelY + 22;
-    int availableTreeHeight = Math.max(0, panelHeight - 22 - (messageSectionHeight > 0 ? (messageSectionHeight + 15) : 0));
-    int computedLine = safeLines > 0 ? Math.max(6, (int)Math.floor((float)availableTreeHeight / (float)safeLines)) : 16;
-    computedLine = Math.min(16, computedLine);
-    currentNodeLineHeight = computedLine;
-    currentTreeScale = currentNodeLineHeight / 16.0f;
-    int treeEndY = renderRecipeTree(context, recipeTree, panelX, y, 0, selectedRecipe);
-        
-        if (messageSectionHeight > 0) {
-            context.fill(panelX, treeEndY, panelX + panelWidth, treeEndY + 1, 0x99608C35);
-            
-            int messageY = treeEndY + 6;
-            
-            int maxMessageY = panelY + panelHeight - 5;
-            
-            drawMessages(context, panelX, messageY, panelWidth, maxMessageY);
-        }
-    }
-    private int countVisibleRecipeTreeLines(RecipeManager.RecipeNode node, String pathKey) {
-        if (node == null) return 0;
-        int count = 1;
-        
-        if (expandedNodes == null) {
-            expandedNodes = new HashMap<>();
-        }
-        
-        // Use path-based key to keep expansion stable regardless of amounts
-        String nodeKey = makePathKey(pathKey, node.name);
-        Boolean isExpanded = expandedNodes.getOrDefault(nodeKey, false);
-        
-        if (isExpanded == null) {
-            isExpanded = false;
-            expandedNodes.put(nodeKey, false);
-        }
-        
-        if (node.ingredients != null && !node.ingredients.isEmpty() && isExpanded) {
-            for (RecipeManager.RecipeNode child : node.ingredients) {
-                count += countVisibleRecipeTreeLines(child, makePathKey(pathKey, node.name));
-            }
+
+        PlanView at(long nextGeneration) {
+            return new PlanView(nextGeneration, recipe, craftAmount, tree, messages, expansion);
         }
-        return count;
     }
-    private int renderRecipeTree(GuiGraphics context, RecipeManager.RecipeNode node, int x, int y, int level, String pathKey) {
-        if (node == null) return y;
-        Minecraft client = Minecraft.getInstance();
-        int unitIndent = Math.max(4, Math.round(RECIPE_LEVEL_INDENT * currentTreeScale));
-        int indent = level * unitIndent;
-        boolean hasEnough = (node.amount == 0);
-        String nodeKey = makePathKey(pathKey, node.name);
-        boolean isExpanded = expandedNodes.getOrDefault(nodeKey, false);
-        boolean hasChildren = node.ingredients != null && !node.ingredients.isEmpty();
-        int bgColor = 0x99271910;
-        int mouseX = (int)(client.mouseHandler.xpos() / client.getWindow().getGuiScale());
-        int mouseY = (int)(client.mouseHandler.ypos() / client.getWindow().getGuiScale());
-        int nodeBaseWidth = Math.max(100, widgetWidth - 20); // account for panel padding
-        int nodeHeight = Math.max(6, currentNodeLineHeight);
-        boolean isHovered = mouseX >= x + indent && mouseX <= x + indent + nodeBaseWidth - indent && 
-                            mouseY >= y && mouseY <= y + nodeHeight;
-        int hoverEffect = isHovered ? 0x22FFFFFF : 0;
-        int nodeWidth = nodeBaseWidth - indent;
-        context.fill(x + indent, y, x + indent + nodeWidth, y + nodeHeight, bgColor + hoverEffect);
-        int borderColor = hasEnough ? 0x88608C35 : 0x88FF5555;
-        drawBorder(context, x + indent, y, nodeWidth, nodeHeight, borderColor);
-        if (hasChildren) {
-            String expandIcon = isExpanded ? "▼" : "▶";
-            context.drawString(
-                client.font,
-                expandIcon,
-                x + indent + Math.max(3, Math.round(5 * currentTreeScale)),
-                y + Math.max(1, Math.round(4 * currentTreeScale)),
-                0xFFFFFFFF,
-                false
-            );
-        }
-    int nameX = x + indent + (hasChildren ? Math.max(14, Math.round(25 * currentTreeScale)) : Math.max(6, Math.round(10 * currentTreeScale)));
-        int textColor;
-        boolean isBold = (level == 0);
-        if (level == 0) {
-            textColor = GOLD; 
-        } else {
-            textColor = hasEnough ? 0xFFFFFFFF : 0xFFFF6B6B;
-        }
-        String amountText = node.amount + "× ";
-        int amountColor = hasEnough ? 0xFF6EFF6E : 0xFFFF6B6B;
-        Component itemName = Component.literal(node.name)
-            .setStyle(Style.EMPTY.withColor(textColor).withBold(isBold));
-        int amountWidth = client.font.width(amountText);
-        int itemWidth = client.font.width(itemName);
-        int totalTextWidth = amountWidth + itemWidth;
-        int maxTextWidth = Math.max(10, nodeWidth - (hasChildren ? Math.max(14, Math.round(25 * currentTreeScale)) : Math.max(6, Math.round(10 * currentTreeScale))));
-        int adjustedMaxTextWidth = (int)Math.floor(maxTextWidth / Math.max(0.01f, currentTreeScale));
-        float textScaleLocal = totalTextWidth > adjustedMaxTextWidth ? (float)adjustedMaxTextWidth / (float)totalTextWidth : 1.0f;
-        float textScale = Math.min(1.0f, textScaleLocal) * currentTreeScale;
-        context.pose().pushMatrix();
-        context.pose().translate(nameX, y + Math.max(1, Math.round(4 * currentTreeScale)));
-        context.pose().scale(textScale, textScale);
-        context.drawString(
-            client.font,
-            amountText,
-            0,
-            0,
-            amountColor,
-            false
-        );
-        context.drawString(
-            client.font,
-            itemName,
-            amountWidth,
-            0,
-            0xFFFFFFFF,
-            false
-        );
-        context.pose().popMatrix();
-        y += nodeHeight;
-    if (hasChildren && isExpanded && node.ingredients.size() > 0) {
-            int lineColor = 0xFF777777;
-            for (int i = 0; i < node.ingredients.size(); i++) {
-                RecipeManager.RecipeNode child = node.ingredients.get(i);
-                int lineStartX = x + indent + Math.max(4, Math.round(6 * currentTreeScale));
-                int vertLineY = y;
-                int childIndentX = x + indent + unitIndent;
-                int vertLen = Math.max(3, Math.round(8 * currentTreeScale));
-                context.fill(lineStartX, vertLineY, lineStartX + 1, vertLineY + vertLen, lineColor);
-                context.fill(lineStartX, vertLineY + vertLen, childIndentX, vertLineY + vertLen + 1, lineColor);
-        int nextY = renderRecipeTree(context, child, x, y, level + 1, nodeKey);
-                y = nextY;
-            }
-        }
-        return y;
+
+    public List<CraftQueuePlanner.QueueTarget> getCraftQueue() {
+        return new ArrayList<>(craftQueue);
     }
-    private void preserveNodeExpansionStates(RecipeManager.RecipeNode node, Map<String, Boolean> prevStates) {
-        if (node == null) return;
-        
-        if (expandedNodes == null) {
-            expandedNodes = new HashMap<>();
-        }
-        
-    String nodeKey = makePathKey(selectedRecipe, node.name);
-    if (prevStates != null && prevStates.containsKey(nodeKey)) {
-            Boolean value = prevStates.get(nodeKey);
-            expandedNodes.put(nodeKey, value != null ? value : false);
-        }
-        if (node.ingredients != null) {
-            for (RecipeManager.RecipeNode child : node.ingredients) {
-                preserveNodeExpansionStates(child, prevStates);
+
+    public CraftQueuePlanner.QueuePlan getQueuePlan() {
+        return queuePlan;
+    }
+
+    /** Adds a target to the craft queue, merging with an existing entry for the same recipe. */
+    public void addToQueue(String recipe, int amount) {
+        if (recipe == null || amount <= 0) return;
+        boolean merged = false;
+        for (int i = 0; i < craftQueue.size(); i++) {
+            CraftQueuePlanner.QueueTarget existing = craftQueue.get(i);
+            if (existing.recipe.equals(recipe)) {
+                craftQueue.set(i, new CraftQueuePlanner.QueueTarget(recipe, existing.amount + amount));
+                merged = true;
+                break;
             }
         }
+        if (!merged) craftQueue.add(new CraftQueuePlanner.QueueTarget(recipe, amount));
+        requestQueuePlan();
+        saveConfiguration();
     }
-    private void drawMessages(GuiGraphics context, int x, int y, int width, int maxY) {
-        Minecraft client = Minecraft.getInstance();
-        int baseHeader = 13;
-        int baseLine = 10;
-        int availableHeight = Math.max(0, maxY - y);
-        int lines = countMessageLines(client, width);
-        int desiredHeight = baseHeader + Math.max(0, (lines - 1) * baseLine);
-        float scale = desiredHeight > 0 ? Math.min(1.0f, Math.max(0.4f, (float)availableHeight / (float)desiredHeight)) : 1.0f;
-
-        if (y + Math.round(baseLine * scale) <= maxY) {
-            Component messagesHeader = Component.literal("Craftable -")
-                .setStyle(Style.EMPTY.withColor(ChatFormatting.YELLOW).withBold(true));
-            context.pose().pushMatrix();
-            context.pose().translate(x + 5, y);
-            context.pose().scale(scale, scale);
-            context.drawString(
-                client.font,
-                messagesHeader,
-                0,
-                0,
-                0xFFFFFFFF,
-                false
-            );
-            context.pose().popMatrix();
-        } else {
-            return;
-        }
 
-        if (messages.size() == 1 && messages.get(0).equals("Craftable -")) {
-            return;
-        }
-        y += Math.round(baseHeader * scale);
-
-        List<String> messagesCopy = new ArrayList<>(messages);
-        messagesCopy.sort((a, b) -> {
-            if (a.equals("Craftable -")) return -1;
-            if (b.equals("Craftable -")) return 1;
-            try {
-                int amountA = extractAmount(a);
-                int amountB = extractAmount(b);
-                return Integer.compare(amountB, amountA);
-            } catch (Exception e) {
-                return 0;
-            }
-        });
+    public void removeFromQueue(String recipe) {
+        craftQueue.removeIf(target -> target.recipe.equals(recipe));
+        requestQueuePlan();
+        saveConfiguration();
+    }
 
-        int unscaledWrapWidth = Math.max(10, (int)Math.floor((width - 15) / Math.max(0.01f, scale)));
-        for (String message : messagesCopy) {
-            if (message.equals("Craftable -")) continue;
-            int textColor = message.startsWith("   ") ? 0xFFFF9D00 : 0xFFFFFFFF;
-            String[] words = message.split(" ");
-            StringBuilder line = new StringBuilder();
-            for (String word : words) {
-                if (client.font.width(line.toString() + word) > unscaledWrapWidth) {
-                    if (y + Math.round(baseLine * scale) > maxY) return;
-                    context.pose().pushMatrix();
-                    context.pose().translate(x + 5, y);
-                    context.pose().scale(scale, scale);
-                    context.drawString(
-                        client.font,
-                        line.toString(),
-                        0,
-                        0,
-                        textColor,
-                        false
-                    );
-                    context.pose().popMatrix();
-                    y += Math.round(baseLine * scale);
-                    line = new StringBuilder(message.startsWith("   ") ? "      " : "   ").append(word).append(" ");
-                } else {
-                    line.append(word).append(" ");
-                }
-            }
-            if (line.length() > 0) {
-                if (y + Math.round((baseLine - 1) * scale) > maxY) return;
-                context.pose().pushMatrix();
-                context.pose().translate(x + 5, y);
-                context.pose().scale(scale, scale);
-                context.drawString(
-                    client.font,
-                    line.toString(),
-                    0,
-                    0,
-                    textColor,
-                    false
-                );
-                context.pose().popMatrix();
-                y += Math.round((baseLine - 1) * scale);
-            }
-        }
+    public void clearQueue() {
+        craftQueue.clear();
+        synchronized (viewLock) {
+            // Outdates any plan still in flight for the old queue
+            queueSequence.incrementAndGet();
+            queuePlan = null;
+        }
+        invalidateLayout();
+        saveConfiguration();
     }
-    
-    private int extractAmount(String message) {
-        try {
-            int xIndex = message.indexOf('×');
-            if (xIndex > 0) {
-                String amountStr = message.substring(0, xIndex).trim();
-                return Integer.parseInt(amountStr);
+
+    /**
+     * Re-plans the craft queue on the refresh lane, replacing any unfinished request. The
+     * queue is read when the plan runs, so a burst of edits costs one plan.
+     */
+    private void requestQueuePlan() {
+        long id = queueSequence.incrementAndGet();
+        refreshLane.execute(() -> {
+            if (id != queueSequence.get()) return;
+            List<CraftQueuePlanner.QueueTarget> targets = new ArrayList<>(craftQueue);
+            CraftQueuePlanner.QueuePlan plan = targets.isEmpty() ? null
+                    : CraftQueuePlanner.plan(targets, resourcesManager.getSnapshot(), RecipeManager.getInstance().getRecipeGraph());
+            synchronized (viewLock) {
+                if (id != queueSequence.get()) {
+                    IrMetrics.increment("widget.queue.superseded");
+                    return;
+                }
+                queuePlan = plan;
             }
-        } catch (Exception e) {
-        }
-        return 0;
+            invalidateLayout();
+        });
     }
+
     public void addMessage(String message) {
-        this.messages.add(message);
+        synchronized (viewLock) {
+            List<String> next = new ArrayList<>(view.messages);
+            next.add(message);
+            view = view.withMessages(Collections.unmodifiableList(next));
+        }
+        invalidateLayout();
     }
+    /** Current HUD messages; the list is immutable. */
     public List<String> getMessagesSnapshot() {
-        return new ArrayList<>(this.messages);
+        return view.messages;
     }
     public int getCraftAmount() {
-        return craftAmount;
+        return inputs.amount;
     }
     public void setCraftAmount(int craftAmount) {
         if (craftAmount < 1) {
             craftAmount = 1;
         }
-        this.craftAmount = craftAmount;
-        updateRecipeData();
+        synchronized (viewLock) {
+            PlanInputs current = inputs;
+            inputs = current.next(current.enabled, current.recipe, craftAmount);
+        }
+        requestRefresh();
         saveConfiguration();
     }
-    private int countMessageLines(Minecraft client, int width) {
-        int lineCount = 1;
-        if (messages.isEmpty()) return lineCount;
-        if (messages.size() == 1 && messages.get(0).equals("Craftable -")) return lineCount;
-        for (String message : new ArrayList<>(messages)) {
-            if (message.equals("Craftable -")) continue;
-            String[] words = message.split(" ");
-            StringBuilder line = new StringBuilder();
-            int linesInMessage = 1;
-            for (String word : words) {
-                if (client.font.width(line.toString() + word) > width - 15) {
-                    linesInMessage++;
-                    line = new StringBuilder(message.startsWith("   ") ? "      " : "   ").append(word).append(" ");
-                } else {
-                    line.append(word).append(" ");
-                }
+    /** Converts the old {@code "A>B>C"} string keys, keeping collapsed entries as well as expanded ones. */
+    private static ExpansionState migrateExpandedNodes(Map<String, Boolean> legacy) {
+        ExpansionState state = ExpansionState.EMPTY;
+        for (Map.Entry<String, Boolean> e : legacy.entrySet()) {
+            if (e.getKey() != null && e.getValue() != null) {
+                state = state.with(ExpansionState.fromPathKey(e.getKey()), e.getValue());
             }
-            lineCount += linesInMessage;
         }
-        return lineCount;
-    }
-
-    public static String makePathKey(String parent, String name) {
-        if (parent == null || parent.isEmpty()) return name == null ? "" : name;
-        if (name == null || name.isEmpty()) return parent;
-        return parent + ">" + name;
-    }
-
-    // Helper method to draw borders since drawBorder was removed from the rendering API in 1.21.10
-    private static void drawBorder(GuiGraphics context, int x, int y, int width, int height, int color) {
-        context.fill(x, y, x + width, y + 1, color);
-        context.fill(x, y + height - 1, x + width, y + height, color);
-        context.fill(x, y, x + 1, y + height, color);
-        context.fill(x + width - 1, y, x + width, y + height, color);
+        InventoryReader.LOGGER.info("Migrated {} tree node states to path IDs", state.size());
+        return state;
     }
 }
-
@@ -0,0 +1,177 @@
+package inventoryreader.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable substring-search index over a list of named items.
+ *
+ * Items are sorted case-insensitively once at build time and addressed by their position
+ * in that order, so every result is already sorted. Names are case-folded up front and a
+ * trigram -> positions map narrows queries of three or more characters to a few
+ * candidates before the actual {@code contains} check. A {@link Searcher} additionally
+ * narrows from its previous result when the new query extends the old one, which is the
+ * common case while typing.
+ */
+public final class SearchIndex<T> {
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final List<T> items;
+    private final String[] folded;
+    private final Map<Long, int[]> trigrams;
+
+    private SearchIndex(List<T> items, String[] folded, Map<Long, int[]> trigrams) {
+        this.items = items;
+        this.folded = folded;
+        this.trigrams = trigrams;
+    }
+
+    public static <T> SearchIndex<T> empty() {
+        return new SearchIndex<>(Collections.emptyList(), new String[0], Collections.emptyMap());
+    }
+
+    public static <T> SearchIndex<T> build(Collection<T> source, Function<T, String> nameOf) {
+        int n = source.size();
+        List<T> sorted = new ArrayList<>(source);
+        String[] names = new String[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            String name = nameOf.apply(sorted.get(i));
+            names[i] = name == null ? "" : name;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b]));
+
+        List<T> items = new ArrayList<>(n);
+        String[] folded = new String[n];
+        Map<Long, IntList> postings = new HashMap<>();
+        for (int pos = 0; pos < n; pos++) {
+            int src = order[pos];
+            items.add(sorted.get(src));
+            String f = fold(names[src]);
+            folded[pos] = f;
+            for (int k = 0; k + 3 <= f.length(); k++) {
+                IntList list = postings.computeIfAbsent(trigram(f, k), key -> new IntList());
+                // Positions are visited in order, so a repeat trigram in one name is always the tail
+                if (list.size == 0 || list.data[list.size - 1] != pos) list.add(pos);
+            }
+        }
+        Map<Long, int[]> trigrams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<Long, IntList> e : postings.entrySet()) {
+            trigrams.put(e.getKey(), e.getValue().toArray());
+        }
+        return new SearchIndex<>(Collections.unmodifiableList(items), folded, trigrams);
+    }
+
+    static String fold(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /** All items in sorted order. */
+    public List<T> all() {
+        return items;
+    }
+
+    /** Items whose name contains {@code query}, case-insensitively, in sorted order. */
+    public List<T> search(String query) {
+        return itemsAt(positionsFor(fold(query)));
+    }
+
+    private int[] positionsFor(String q) {
+        if (q.isEmpty()) return allPositions();
+        if (q.length() < 3) return filter(allPositions(), q);
+        int[] smallest = null;
+        for (int k = 0; k + 3 <= q.length(); k++) {
+            int[] p = trigrams.get(trigram(q, k));
+            if (p == null) return NO_POSITIONS;
+            if (smallest == null || p.length < smallest.length) smallest = p;
+        }
+        return filter(smallest, q);
+    }
+
+    private int[] allPositions() {
+        int[] all = new int[folded.length];
+        for (int i = 0; i < all.length; i++) all[i] = i;
+        return all;
+    }
+
+    private int[] filter(int[] candidates, String q) {
+        int[] out = new int[candidates.length];
+        int count = 0;
+        for (int pos : candidates) {
+            if (folded[pos].contains(q)) out[count++] = pos;
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    private List<T> itemsAt(int[] positions) {
+        if (positions.length == items.size()) return items;
+        List<T> out = new ArrayList<>(positions.length);
+        for (int pos : positions) out.add(items.get(pos));
+        return out;
+    }
+
+    /**
+     * Per-screen search state: remembers the last query and its matches so that typing
+     * another character only re-checks the previous matches.
+     */
+    public static final class Searcher<T> {
+        private SearchIndex<T> index = empty();
+        private String lastQuery = null;
+        private int[] lastPositions = NO_POSITIONS;
+
+        public void setIndex(SearchIndex<T> index) {
+            if (index == this.index) return;
+            this.index = index == null ? empty() : index;
+            lastQuery = null;
+            lastPositions = NO_POSITIONS;
+        }
+
+        public SearchIndex<T> getIndex() {
+            return index;
+        }
+
+        public List<T> search(String query) {
+            String q = fold(query);
+            int[] positions;
+            if (lastQuery != null && q.contains(lastQuery)) {
+                // Anything matching the longer query also matched the one it extends
+                positions = q.equals(lastQuery) ? lastPositions : index.filter(lastPositions, q);
+            } else {
+                positions = index.positionsFor(q);
+            }
+            lastQuery = q;
+            lastPositions = positions;
+            return index.itemsAt(positions);
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -2,10 +2,10 @@ package inventoryreader.ir;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.HashMap;
@@ -16,7 +16,7 @@ import net.minecraft.world.inventory.Slot;
 import net.minecraft.world.item.ItemStack;
 
 public class StorageReader {
-    private static final File DATA_FILE = new File(FilePathManager.DATA_DIR, "allcontainerData.json");
+    static final File DATA_FILE = new File(FilePathManager.DATA_DIR, "allcontainerData.json");
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private static final ResourcesManager RESOURCES_MANAGER = ResourcesManager.getInstance();
     private static final StorageReader INSTANCE = new StorageReader();
@@ -28,6 +28,16 @@ public class StorageReader {
     }
 
     private final Map<String, Integer> changesData = new HashMap<>();
+    /**
+     * Content hash of each container as last stored; lets an unchanged reopen skip the diff.
+     * Mirrors container_hashes.json, which sits next to allcontainerData.json.
+     */
+    private final Map<String, Long> snapshotHashes = new HashMap<>();
+    private boolean hashesLoaded = false;
+    // Contents as last stored, to confirm a hash hit; read from allcontainerData.json once
+    private Map<String, Map<String, Integer>> storedContents = null;
+    // Client thread only
+    private boolean capturePending = false;
 
     public Map<String, Map<String, Integer>> loadAllContainerDataFromFile() {
         Type type = new TypeToken<Map<String, Map<String, Integer>>>() {}.getType();
@@ -44,41 +54,118 @@ public class StorageReader {
     }
 
     private void saveAllContainerDataToFile(Map<String, Map<String, Integer>> allcontainerData) {
-        try (FileWriter writer = new FileWriter(DATA_FILE)) {
-            gson.toJson(allcontainerData, writer);
-        } catch (IOException e) {
-            InventoryReader.LOGGER.error("Failed to save data to file", e);
-        }
+        // Replaced atomically: the drift reconciler reads this file from another thread
+        ResourcesManager.atomicWriteJson(DATA_FILE, gson.toJson(allcontainerData));
     }
 
-    public void saveContainerContents(AbstractContainerMenu handler, String title) {
-        Map<String, Map<String, Integer>> fileSaveContainerData = loadAllContainerDataFromFile();
+    /**
+     * Captures the container at the end of the tick rather than mid-click; all requests made
+     * within one tick collapse into a single capture of the settled contents.
+     */
+    public void requestCapture(AbstractContainerMenu handler, String title) {
+        if (capturePending) return;
+        capturePending = true;
+        TickScheduler.getInstance().submit("container_click_capture", TickScheduler.Priority.NORMAL, client -> {
+            capturePending = false;
+            saveContainerContents(handler, title);
+        });
+    }
 
+    public void saveContainerContents(AbstractContainerMenu handler, String title) {
         if (!title.contains("Backpack") && !title.contains("Ender Chest") && !title.contains("The Forge") && !title.contains("Accessory Bag")) {
             return;
         }
 
+        List<Slot> slots = handler.slots;
+        int slotsToIterate = slots.size() - 36;
+        long hash = contentHash(slots, slotsToIterate);
+        Long storedHash = storedHashes().get(title);
+        if (storedHash != null && storedHash == hash) {
+            // Equal hashes are only a hint; the stored contents decide
+            if (readContents(slots, slotsToIterate).equals(storedContents().get(title))) {
+                IrMetrics.increment("storage.snapshot.hash_hit");
+                return;
+            }
+            IrMetrics.increment("storage.snapshot.hash_collision");
+        }
+        IrMetrics.increment("storage.snapshot.hash_miss");
+
+        Map<String, Map<String, Integer>> fileSaveContainerData = loadAllContainerDataFromFile();
         if (fileSaveContainerData.containsKey(title)) {
             compareContainerData(handler, title, fileSaveContainerData);
+            rememberSnapshot(title, hash, fileSaveContainerData);
             return;
         }
 
-        List<Slot> slots = handler.slots;
-        int slotsToIterate = slots.size() - 36;
-        Map<String, Integer> newData = new HashMap<>();
+        Map<String, Integer> newData = readContents(slots, slotsToIterate);
+        fileSaveContainerData.put(title, newData);
+        ItemLocationIndex.getInstance().apply(title, newData);
+        saveAllContainerDataToFile(fileSaveContainerData);
+        RESOURCES_MANAGER.saveData(title, newData);
+        rememberSnapshot(title, hash, fileSaveContainerData);
+    }
 
-        for (int i = 0; i < slotsToIterate; i++) {
-            Slot slot = slots.get(i);
-            ItemStack stack = slot.getItem();
+    /** Item name -> total count over the container slots, as stored in allcontainerData.json. */
+    private static Map<String, Integer> readContents(List<Slot> slots, int count) {
+        Map<String, Integer> contents = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            ItemStack stack = slots.get(i).getItem();
             if (!stack.isEmpty()) {
-                String itemName = stack.getHoverName().getString();
-                int itemCount = stack.getCount();
-                newData.put(itemName, newData.getOrDefault(itemName, 0) + itemCount);
+                contents.merge(stack.getHoverName().getString(), stack.getCount(), Integer::sum);
             }
         }
-        fileSaveContainerData.put(title, newData);
-        saveAllContainerDataToFile(fileSaveContainerData);
-        RESOURCES_MANAGER.saveData(newData);
+        return contents;
+    }
+
+    private void rememberSnapshot(String title, long hash, Map<String, Map<String, Integer>> allcontainerData) {
+        storedContents = allcontainerData;
+        storedHashes().put(title, hash);
+        ResourcesManager.atomicWriteJson(FilePathManager.CONTAINER_HASHES_JSON, gson.toJson(snapshotHashes));
+    }
+
+    private Map<String, Long> storedHashes() {
+        if (hashesLoaded) return snapshotHashes;
+        hashesLoaded = true;
+        if (!FilePathManager.CONTAINER_HASHES_JSON.exists()) return snapshotHashes;
+        try (FileReader reader = new FileReader(FilePathManager.CONTAINER_HASHES_JSON)) {
+            Map<String, Long> stored = gson.fromJson(reader, new TypeToken<Map<String, Long>>() {}.getType());
+            if (stored != null) snapshotHashes.putAll(stored);
+        } catch (IOException | JsonParseException e) {
+            InventoryReader.LOGGER.error("Failed to read container hashes", e);
+        }
+        return snapshotHashes;
+    }
+
+    private Map<String, Map<String, Integer>> storedContents() {
+        if (storedContents == null) storedContents = loadAllContainerDataFromFile();
+        return storedContents;
+    }
+
+    /**
+     * Rolling hash over (item name, count) of each container slot, stirred with a 64-bit
+     * mixer after every field so nearby inputs spread over all 64 bits. Names are hashed as
+     * components, which hash structurally, so nothing is flattened to a string.
+     */
+    private static long contentHash(List<Slot> slots, int count) {
+        long hash = mix(count);
+        for (int i = 0; i < count; i++) {
+            ItemStack stack = slots.get(i).getItem();
+            if (stack.isEmpty()) {
+                hash = mix(hash);
+            } else {
+                hash = mix(hash ^ stack.getHoverName().hashCode());
+                hash = mix(hash ^ stack.getCount());
+            }
+        }
+        return hash;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     public void compareContainerData(AbstractContainerMenu handler, String title, Map<String, Map<String, Integer>> allcontainerData) {
@@ -118,12 +205,18 @@ public class StorageReader {
         previousData.entrySet().removeIf(entry -> !newData.containsKey(entry.getKey()) || entry.getValue() == 0);
 
         allcontainerData.put(title, previousData);
+        ItemLocationIndex.getInstance().apply(title, changesData);
         saveAllContainerDataToFile(allcontainerData);
-        RESOURCES_MANAGER.saveData(changesData);
+        RESOURCES_MANAGER.saveData(title, changesData);
         changesData.clear();
     }
 
     public void clearAllData() {
         changesData.clear();
+        snapshotHashes.clear();
+        // The files go with the rest of the data; nothing to read back
+        hashesLoaded = true;
+        storedContents = null;
+        ItemLocationIndex.getInstance().clear();
     }
 }
\ No newline at end of file
@@ -1,7 +1,6 @@
 package inventoryreader.ir;
 
 import net.fabricmc.api.ClientModInitializer;
-import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.world.inventory.AbstractContainerMenu;
@@ -16,7 +15,7 @@ public class StorageViewerMod implements ClientModInitializer{
 
     @Override
     public void onInitializeClient() {
-        ClientTickEvents.END_CLIENT_TICK.register(this::onEndClientTick);
+        TickScheduler.getInstance().every("container_capture", 1, TickScheduler.Priority.NORMAL, this::onEndClientTick);
     }
 
     private void onEndClientTick(Minecraft client) {
@@ -0,0 +1,136 @@
+package inventoryreader.ir;
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.client.Minecraft;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Runs the mod's client-thread work from a single end-of-tick hook within a time budget.
+ *
+ * Features register recurring tasks with a period in ticks, or submit one-off tasks from any
+ * thread. Each tick the due tasks run in priority order (then oldest due first) until the
+ * budget is spent; whatever is left waits for the next tick, ahead of tasks that only
+ * become due then. At least one task runs every tick so nothing starves. Per-task timings,
+ * deferrals and budget overruns are recorded in {@link IrMetrics} under {@code tick.}.
+ */
+public final class TickScheduler {
+    private static final TickScheduler INSTANCE = new TickScheduler();
+    private static final long DEFAULT_BUDGET_NANOS = 500_000;
+
+    public enum Priority {
+        /** Input handling and anything the player waits on. */
+        HIGH,
+        NORMAL,
+        /** Housekeeping that can slip a few ticks. */
+        LOW
+    }
+
+    private static final class Task {
+        final String name;
+        final String timerName;
+        final String overBudgetName;
+        final Priority priority;
+        final int periodTicks;
+        final Consumer<Minecraft> action;
+        final long sequence;
+        long dueTick;
+        boolean queued;
+
+        Task(String name, Priority priority, int periodTicks, Consumer<Minecraft> action, long sequence, long dueTick) {
+            this.name = name;
+            this.timerName = "tick.task." + name;
+            this.overBudgetName = "tick.task." + name + ".over_budget";
+            this.priority = priority;
+            this.periodTicks = periodTicks;
+            this.action = action;
+            this.sequence = sequence;
+            this.dueTick = dueTick;
+        }
+    }
+
+    private final List<Task> recurring = new CopyOnWriteArrayList<>();
+    private final Queue<Task> submitted = new ConcurrentLinkedQueue<>();
+    // Client thread only
+    private final PriorityQueue<Task> ready = new PriorityQueue<>((a, b) -> {
+        if (a.priority != b.priority) return a.priority.compareTo(b.priority);
+        if (a.dueTick != b.dueTick) return Long.compare(a.dueTick, b.dueTick);
+        return Long.compare(a.sequence, b.sequence);
+    });
+    private long tick = 0;
+    private long sequence = 0;
+    private volatile long budgetNanos = DEFAULT_BUDGET_NANOS;
+
+    private TickScheduler() {
+        ClientTickEvents.END_CLIENT_TICK.register(this::onEndTick);
+    }
+
+    public static TickScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public void setBudgetNanos(long budgetNanos) {
+        this.budgetNanos = Math.max(0, budgetNanos);
+    }
+
+    /** Runs {@code action} on the client thread every {@code periodTicks} ticks. */
+    public synchronized void every(String name, int periodTicks, Priority priority, Consumer<Minecraft> action) {
+        recurring.add(new Task(name, priority, Math.max(1, periodTicks), action, sequence++, 0));
+    }
+
+    /** Runs {@code action} once on the client thread, at the end of this or a later tick. */
+    public synchronized void submit(String name, Priority priority, Consumer<Minecraft> action) {
+        submitted.add(new Task(name, priority, 0, action, sequence++, 0));
+    }
+
+    private void onEndTick(Minecraft client) {
+        tick++;
+        Task task;
+        while ((task = submitted.poll()) != null) {
+            task.dueTick = tick;
+            ready.add(task);
+        }
+        for (Task t : recurring) {
+            if (!t.queued && tick >= t.dueTick) {
+                t.queued = true;
+                ready.add(t);
+            }
+        }
+
+        long budget = budgetNanos;
+        long start = System.nanoTime();
+        boolean ranAny = false;
+        while (!ready.isEmpty()) {
+            if (ranAny && System.nanoTime() - start >= budget) break;
+            task = ready.poll();
+            long taskStart = System.nanoTime();
+            try {
+                task.action.accept(client);
+            } catch (RuntimeException e) {
+                InventoryReader.LOGGER.error("Tick task {} failed", task.name, e);
+            }
+            long took = System.nanoTime() - taskStart;
+            IrMetrics.recordNanos(task.timerName, took);
+            if (took > budget) IrMetrics.increment(task.overBudgetName);
+            if (task.periodTicks > 0) {
+                task.queued = false;
+                task.dueTick = tick + task.periodTicks;
+            }
+            ranAny = true;
+        }
+
+        long total = System.nanoTime() - start;
+        if (ranAny) IrMetrics.recordNanos("tick.total", total);
+        if (total > budget) IrMetrics.increment("tick.over_budget");
+        if (!ready.isEmpty()) IrMetrics.add("tick.deferred", ready.size());
+    }
+}
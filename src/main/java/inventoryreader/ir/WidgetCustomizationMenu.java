@@ -3,7 +3,6 @@ package inventoryreader.ir;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
@@ -24,10 +23,16 @@ public class WidgetCustomizationMenu extends Screen {
     private final ResourcesManager resourcesManager;
     private EditBox searchField;
     private List<String> filteredRecipes;
+    private final SearchIndex.Searcher<String> recipeSearcher = new SearchIndex.Searcher<>();
     private int scrollOffset = 0;
     private final int MAX_RECIPES_SHOWN = 10;
     private String selectedRecipe = null;
     private RecipeManager.RecipeNode recipeTree = null;
+    // The preview tree is planned off-thread; appliedPlan is the result currently shown
+    private final PlanSlot treePlan = new PlanSlot();
+    // Visible tree rows from the last render: arg is the path ID, ref the node
+    private final HitIndex treeHits = new HitIndex();
+    private PlanSlot.Result appliedPlan = null;
     private int treeViewX = 300;
     private int treeViewY = 80;
     private int treeViewWidth = 400;
@@ -53,21 +58,33 @@ public class WidgetCustomizationMenu extends Screen {
     private Button positioningTabButton;
     private int craftAmount;
     private EditBox craftAmountField;
+    private Button clearQueueButton;
 
     public WidgetCustomizationMenu() {
         super(Component.literal("Widget Customization"));
         this.widget = SandboxWidget.getInstance();
         this.recipeManager = RecipeManager.getInstance();
         this.resourcesManager = ResourcesManager.getInstance();
-        this.filteredRecipes = new ArrayList<>(recipeManager.getRecipeNames());
+        this.filteredRecipes = recipeManager.getRecipeNames();
         this.selectedRecipe = widget.getSelectedRecipe();
         this.widgetPositionX = widget.getWidgetX();
         this.widgetPositionY = widget.getWidgetY();
         this.craftAmount = widget.getCraftAmount();
         this.currentTab = Tab.RECIPE_SELECTION;
         if (selectedRecipe != null) {
-            ResourcesManager.RemainingResponse response = resourcesManager.getRemainingIngredients(selectedRecipe, craftAmount);
-            this.recipeTree = convertResourceNodeToRecipeNode(response.full_recipe);
+            treePlan.request(selectedRecipe, craftAmount);
+        }
+    }
+
+    /** Swaps in the newest completed preview plan if it belongs to the selected recipe. */
+    private void applyTreePlan() {
+        PlanSlot.Result result = treePlan.latest();
+        if (result == null || result == appliedPlan || !result.recipe.equals(selectedRecipe)) return;
+        boolean newRecipe = appliedPlan == null || !appliedPlan.recipe.equals(result.recipe);
+        appliedPlan = result;
+        recipeTree = result.response.full_recipe;
+        if (newRecipe && recipeTree != null) {
+            widget.expandIfUntouched(SandboxWidget.rootNodePath(selectedRecipe, recipeTree));
         }
     }
 
@@ -154,6 +171,40 @@ public class WidgetCustomizationMenu extends Screen {
         .bounds(width / 2 - 90, height - 30, 180, 20)
         .build();
         addRenderableWidget(applyButton);
+
+        int queueButtonY = Math.min(305, height - 56);
+        Button addToQueueButton = Button.builder(
+            Component.literal("Add to Queue"),
+            button -> addSelectedToQueue()
+        )
+        .bounds(20, queueButtonY, 122, 20)
+        .build();
+        addRenderableWidget(addToQueueButton);
+        clearQueueButton = Button.builder(
+            Component.literal("Clear Queue (" + widget.getCraftQueue().size() + ")"),
+            button -> {
+                widget.clearQueue();
+                button.setMessage(Component.literal("Clear Queue (0)"));
+            }
+        )
+        .bounds(148, queueButtonY, 122, 20)
+        .build();
+        addRenderableWidget(clearQueueButton);
+    }
+
+    private void addSelectedToQueue() {
+        if (selectedRecipe == null) return;
+        widget.addToQueue(selectedRecipe, craftAmount);
+        Minecraft client = Minecraft.getInstance();
+        if (client.player != null) {
+            Component message = Component.literal("Queued " + craftAmount + "× " + selectedRecipe
+                    + " (" + widget.getCraftQueue().size() + " in queue)")
+                .setStyle(Style.EMPTY.withColor(ChatFormatting.GREEN));
+            client.player.displayClientMessage(message, true);
+        }
+        if (clearQueueButton != null) {
+            clearQueueButton.setMessage(Component.literal("Clear Queue (" + widget.getCraftQueue().size() + ")"));
+        }
     }
 
     private void initPositioningTab() {
@@ -209,14 +260,8 @@ public class WidgetCustomizationMenu extends Screen {
     }
 
     private void updateFilteredRecipes(String searchTerm) {
-        if (searchTerm == null || searchTerm.isEmpty()) {
-            this.filteredRecipes = new ArrayList<>(recipeManager.getRecipeNames());
-        } else {
-            String lowerSearchTerm = searchTerm.toLowerCase();
-            this.filteredRecipes = recipeManager.getRecipeNames().stream()
-                .filter(name -> name.toLowerCase().contains(lowerSearchTerm))
-                .collect(Collectors.toList());
-        }
+        recipeSearcher.setIndex(recipeManager.getRecipeSearchIndex());
+        this.filteredRecipes = recipeSearcher.search(searchTerm);
         scrollOffset = 0;
     }
 
@@ -228,13 +273,13 @@ public class WidgetCustomizationMenu extends Screen {
             this.craftAmount = 1;
         }
         if (selectedRecipe != null) {
-            ResourcesManager.RemainingResponse response = resourcesManager.getRemainingIngredients(selectedRecipe, craftAmount);
-            recipeTree = convertResourceNodeToRecipeNode(response.full_recipe);
+            treePlan.request(selectedRecipe, craftAmount);
         }
     }
 
     @Override
     public void render(GuiGraphics context, int mouseX, int mouseY, float delta) {
+        applyTreePlan();
         if (currentTab == Tab.RECIPE_SELECTION) {
             renderRecipeTab(context, mouseX, mouseY);
         } else {
@@ -329,9 +374,14 @@ public class WidgetCustomizationMenu extends Screen {
             treeViewX + treeViewWidth, 
             treeViewY + treeViewHeight
         );
+        if (treePlan.isComputing()) {
+            String computing = "Computing...";
+            context.drawString(font, computing, treeViewX + treeViewWidth - font.width(computing) - 6, treeViewY + 4, 0xFFAAAAAA, false);
+        }
+        treeHits.clear();
         if (recipeTree != null) {
-            renderRecipeTree(context, recipeTree, treeViewX + 10, treeViewY + 10 - treeScrollOffset, 0, selectedRecipe);
-            int totalHeight = getExpandedNodeHeight(recipeTree, selectedRecipe);
+            renderRecipeTree(context, recipeTree, treeViewX + 10, treeViewY + 10 - treeScrollOffset, 0, SandboxWidget.rootPath(selectedRecipe));
+            int totalHeight = getExpandedNodeHeight(recipeTree, SandboxWidget.rootPath(selectedRecipe));
             if (totalHeight > treeViewHeight) {
                 if (treeScrollOffset > 0) {
                     String up = "▲";
@@ -417,18 +467,18 @@ public class WidgetCustomizationMenu extends Screen {
                 int contentX = widgetPositionX + 10;
                 int contentY = widgetPositionY + 50;
                 int contentWidth = Math.max(20, previewWidth - 20);
-                int totalLines = getExpandedNodeHeight(recipeTree, selectedRecipe) / 16; 
+                int totalLines = getExpandedNodeHeight(recipeTree, SandboxWidget.rootPath(selectedRecipe)) / 16; 
                 totalLines = Math.max(totalLines, 1);
                 int availableHeight = Math.max(10, previewHeight - (contentY - widgetPositionY) - 10);
                 int lineHeight = Math.min(16, Math.max(6, availableHeight / totalLines));
 
-                int maxDepth = getExpandedMaxDepth(recipeTree, selectedRecipe, 0);
+                int maxDepth = getExpandedMaxDepth(recipeTree, SandboxWidget.rootPath(selectedRecipe), 0);
                 int baseIndentUnit = Math.max(4, Math.round(RECIPE_LEVEL_INDENT * Math.max(0.3f, lineHeight / 16.0f)));
                 int minNodeWidth = 60;
                 int maxAllowedIndent = Math.max(2, (contentWidth - minNodeWidth) / Math.max(1, maxDepth));
                 int indentUnit = Math.max(2, Math.min(baseIndentUnit, maxAllowedIndent));
 
-                int treeEndY = renderStaticWidgetStyleTreeScaled(context, recipeTree, contentX, contentY, 0, contentWidth, selectedRecipe, lineHeight, indentUnit);
+                int treeEndY = renderStaticWidgetStyleTreeScaled(context, recipeTree, contentX, contentY, 0, contentWidth, SandboxWidget.rootPath(selectedRecipe), lineHeight, indentUnit);
 
                 int dividerY = treeEndY + 4;
                 if (dividerY < widgetPositionY + previewHeight - 5) {
@@ -463,10 +513,10 @@ public class WidgetCustomizationMenu extends Screen {
 
     
 
-    private int renderStaticWidgetStyleTreeScaled(GuiGraphics context, RecipeManager.RecipeNode node, int x, int y, int level, int availableWidth, String pathKey, int lineHeight, int indentUnit) {
+    private int renderStaticWidgetStyleTreeScaled(GuiGraphics context, RecipeManager.RecipeNode node, int x, int y, int level, int availableWidth, long parentPath, int lineHeight, int indentUnit) {
         if (node == null) return y;
         int indent = level * indentUnit;
-        boolean hasChildren = node.ingredients != null && !node.ingredients.isEmpty();
+        boolean hasChildren = node.hasIngredients();
         boolean hasEnough = (node.amount == 0);
         int nodeWidth = Math.max(40, availableWidth - indent);
 
@@ -475,7 +525,7 @@ public class WidgetCustomizationMenu extends Screen {
         int borderColor = hasEnough ? 0x88608C35 : 0x88FF5555;
         drawBorder(context, x + indent, y, nodeWidth, lineHeight, borderColor);
 
-        String nextKey = SandboxWidget.makePathKey(pathKey, node.name);
+        long nextKey = ExpansionState.child(parentPath, node.name);
         boolean isExpanded = widget.isNodeExpanded(nextKey);
         if (hasChildren) {
             context.drawString(
@@ -513,8 +563,8 @@ public class WidgetCustomizationMenu extends Screen {
 
         if (hasChildren && isExpanded) {
             int lineColor = 0xFF777777;
-            for (int i = 0; i < node.ingredients.size(); i++) {
-                RecipeManager.RecipeNode child = node.ingredients.get(i);
+            for (int i = 0; i < node.getIngredients().size(); i++) {
+                RecipeManager.RecipeNode child = node.getIngredients().get(i);
                 int lineStartX = x + indent + Math.max(4, Math.round(6 * (lineHeight / 16.0f)));
                 int vertLineY = y;
                 int childIndentX = x + indent + indentUnit;
@@ -611,14 +661,14 @@ public class WidgetCustomizationMenu extends Screen {
         return 0;
     }
 
-    private int getExpandedMaxDepth(RecipeManager.RecipeNode node, String pathKey, int level) {
+    private int getExpandedMaxDepth(RecipeManager.RecipeNode node, long parentPath, int level) {
         if (node == null) return level;
-        boolean hasChildren = node.ingredients != null && !node.ingredients.isEmpty();
-        String nextKey = SandboxWidget.makePathKey(pathKey, node.name);
+        boolean hasChildren = node.hasIngredients();
+        long nextKey = ExpansionState.child(parentPath, node.name);
         boolean isExpanded = widget.isNodeExpanded(nextKey);
         int max = level;
         if (hasChildren && isExpanded) {
-            for (RecipeManager.RecipeNode child : node.ingredients) {
+            for (RecipeManager.RecipeNode child : node.getIngredients()) {
                 max = Math.max(max, getExpandedMaxDepth(child, nextKey, level + 1));
             }
         }
@@ -646,14 +696,14 @@ public class WidgetCustomizationMenu extends Screen {
 
     
 
-    private int renderRecipeTree(GuiGraphics context, RecipeManager.RecipeNode node, int x, int y, int level, String pathKey) {
+    private int renderRecipeTree(GuiGraphics context, RecipeManager.RecipeNode node, int x, int y, int level, long parentPath) {
         if (node == null) return y;
         Minecraft client = Minecraft.getInstance();
         int indent = level * RECIPE_LEVEL_INDENT;
         boolean hasEnough = (node.amount == 0);
-        String nodeKey = SandboxWidget.makePathKey(pathKey, node.name);
+        long nodeKey = ExpansionState.child(parentPath, node.name);
         boolean isExpanded = widget.isNodeExpanded(nodeKey);
-        boolean hasChildren = node.ingredients != null && !node.ingredients.isEmpty();
+        boolean hasChildren = node.hasIngredients();
         int bgColor = 0x99271910;
         
         int mouseX = (int)(client.mouseHandler.xpos() / client.getWindow().getGuiScale());
@@ -664,6 +714,9 @@ public class WidgetCustomizationMenu extends Screen {
         
         int nodeWidth = treeViewWidth - 20 - indent;
         context.fill(x + indent, y, x + indent + nodeWidth, y + 16, bgColor + hoverEffect);
+        if (y + 16 >= treeViewY && y <= treeViewY + treeViewHeight) {
+            treeHits.add(x + indent, y, nodeWidth + 1, 17, 0, nodeKey, node);
+        }
         
         int borderColor = hasEnough ? 0x88608C35 : 0x88FF5555;
         drawBorder(context, x + indent, y, nodeWidth, 16, borderColor);
@@ -727,10 +780,10 @@ public class WidgetCustomizationMenu extends Screen {
         
         y += 16;
         
-    if (hasChildren && isExpanded && node.ingredients.size() > 0) {
+    if (hasChildren && isExpanded && node.getIngredients().size() > 0) {
             int lineColor = 0xFF777777;
-            for (int i = 0; i < node.ingredients.size(); i++) {
-                RecipeManager.RecipeNode child = node.ingredients.get(i);
+            for (int i = 0; i < node.getIngredients().size(); i++) {
+                RecipeManager.RecipeNode child = node.getIngredients().get(i);
                 int lineStartX = x + indent + 6;
                 int vertLineY = y;
                 int childIndentX = x + indent + RECIPE_LEVEL_INDENT;
@@ -759,7 +812,7 @@ public class WidgetCustomizationMenu extends Screen {
             mouseX >= treeViewX && mouseX <= treeViewX + treeViewWidth && 
             mouseY >= treeViewY && mouseY <= treeViewY + treeViewHeight) {
             if (verticalAmount != 0 && recipeTree != null) {
-                int totalTreeHeight = getExpandedNodeHeight(recipeTree, selectedRecipe);
+                int totalTreeHeight = getExpandedNodeHeight(recipeTree, SandboxWidget.rootPath(selectedRecipe));
                 int visibleHeight = treeViewHeight - 20;
                 int scrollAmount = (int)(verticalAmount * -12);
                 treeScrollOffset += scrollAmount;
@@ -805,12 +858,12 @@ public class WidgetCustomizationMenu extends Screen {
                 int recipeIndex = (int) ((mouseY - 80) / 20);
                 int actualIndex = scrollOffset + recipeIndex;
                 if (actualIndex >= 0 && actualIndex < filteredRecipes.size() && recipeIndex < MAX_RECIPES_SHOWN) {
-                    selectedRecipe = filteredRecipes.get(actualIndex);
-                    ResourcesManager.RemainingResponse response = resourcesManager.getRemainingIngredients(selectedRecipe, craftAmount);
-                    recipeTree = convertResourceNodeToRecipeNode(response.full_recipe);
-                    if (recipeTree != null) {
-                        widget.setNodeExpansion(SandboxWidget.getNodeKey(recipeTree), true);
+                    String picked = filteredRecipes.get(actualIndex);
+                    if (!picked.equals(selectedRecipe)) {
+                        recipeTree = null;
                     }
+                    selectedRecipe = picked;
+                    treePlan.request(selectedRecipe, craftAmount);
                     return true;
                 }
             }
@@ -942,79 +995,32 @@ public class WidgetCustomizationMenu extends Screen {
     }
 
     private boolean handleTreeNodeClick(double mouseX, double mouseY) {
-        int x = treeViewX + 10;
-        int y = treeViewY + 10 - treeScrollOffset;
-        return checkNodeClick(recipeTree, mouseX, mouseY, x, y, 0, selectedRecipe);
-    }
-
-    private boolean checkNodeClick(RecipeManager.RecipeNode node, double mouseX, double mouseY, int x, int y, int level, String pathKey) {
-        if (node == null) return false;
-        
-        if (y + 16 < treeViewY || y > treeViewY + treeViewHeight) {
-            y += 16;
-            if (node.ingredients != null && !node.ingredients.isEmpty() && 
-                widget.isNodeExpanded(SandboxWidget.makePathKey(pathKey, node.name))) {
-                for (RecipeManager.RecipeNode child : node.ingredients) {
-                    boolean childResult = checkNodeClick(child, mouseX, mouseY, x, y, level + 1, SandboxWidget.makePathKey(pathKey, node.name));
-                    if (childResult) return true;
-                    y += getExpandedNodeHeight(child, SandboxWidget.makePathKey(pathKey, node.name));
-                }
-            }
-            return false;
+        int slot = treeHits.find(mouseX, mouseY);
+        if (slot < 0) return false;
+        RecipeManager.RecipeNode node = (RecipeManager.RecipeNode) treeHits.ref(slot);
+        if (node.hasIngredients()) {
+            widget.toggleNodeExpansion(treeHits.arg(slot));
+            return true;
         }
-        
-        int indent = level * RECIPE_LEVEL_INDENT;
-        int nodeHeight = 16;
-        boolean hasChildren = node.ingredients != null && !node.ingredients.isEmpty();
-        int nodeWidth = treeViewWidth - 20 - indent;
-        
-    if (mouseY >= y && mouseY <= y + nodeHeight && 
-            mouseY >= treeViewY && mouseY <= treeViewY + treeViewHeight) {
-            if (mouseX >= x + indent && mouseX <= x + indent + nodeWidth) {
-        String nodeKey = SandboxWidget.makePathKey(pathKey, node.name);
-                if (hasChildren && mouseX <= x + indent + 25) {
-                    widget.toggleNodeExpansion(nodeKey);
-                    return true;
-                } 
-                else if (hasChildren) {
-                    widget.toggleNodeExpansion(nodeKey);
-                    return true;
-                }
-                else {
-                    Minecraft client = Minecraft.getInstance();
-                    Map<String, Integer> resources = ResourcesManager.getInstance().getAllResources();
-                    int available = resources.getOrDefault(node.name, 0);
-                    boolean hasEnough = available >= node.amount;
-                    Component message = Component.literal("You have " + available + "/" + node.amount + " of " + node.name)
-                        .setStyle(Style.EMPTY.withColor(hasEnough ? ChatFormatting.GREEN : ChatFormatting.RED));
-                    if (client.player != null) {
-                        client.player.displayClientMessage(message, true);
-                    }
-                    return true;
-                }
-            }
-        }
-        
-        y += nodeHeight;
-        
-    if (hasChildren && widget.isNodeExpanded(SandboxWidget.makePathKey(pathKey, node.name))) {
-            for (RecipeManager.RecipeNode child : node.ingredients) {
-        if (checkNodeClick(child, mouseX, mouseY, x, y, level + 1, SandboxWidget.makePathKey(pathKey, node.name))) {
-                    return true;
-                }
-        y += getExpandedNodeHeight(child, SandboxWidget.makePathKey(pathKey, node.name));
-            }
+        Minecraft client = Minecraft.getInstance();
+        Map<String, Integer> resources = ResourcesManager.getInstance().getSnapshot();
+        int available = resources.getOrDefault(node.name, 0);
+        boolean hasEnough = available >= node.amount;
+        Component message = Component.literal("You have " + available + "/" + node.amount + " of " + node.name)
+            .setStyle(Style.EMPTY.withColor(hasEnough ? ChatFormatting.GREEN : ChatFormatting.RED));
+        if (client.player != null) {
+            client.player.displayClientMessage(message, true);
         }
-        return false;
+        return true;
     }
 
-    private int getExpandedNodeHeight(RecipeManager.RecipeNode node, String pathKey) {
+    private int getExpandedNodeHeight(RecipeManager.RecipeNode node, long parentPath) {
         if (node == null) return 0;
         int height = 16;
-        if (node.ingredients != null && !node.ingredients.isEmpty() && 
-        widget.isNodeExpanded(SandboxWidget.makePathKey(pathKey, node.name))) {
-        for (RecipeManager.RecipeNode child : node.ingredients) {
-        height += getExpandedNodeHeight(child, SandboxWidget.makePathKey(pathKey, node.name));
+        if (node.hasIngredients() && 
+        widget.isNodeExpanded(ExpansionState.child(parentPath, node.name))) {
+        for (RecipeManager.RecipeNode child : node.getIngredients()) {
+        height += getExpandedNodeHeight(child, ExpansionState.child(parentPath, node.name));
             }
         }
         return height;
@@ -1037,6 +1043,7 @@ public class WidgetCustomizationMenu extends Screen {
 
     private void saveWidgetConfiguration() {
         widget.saveConfiguration();
+        widget.flushConfiguration();
         Minecraft client = Minecraft.getInstance();
         if (client.player != null) {
             Component message = Component.literal("Widget configuration saved!")
@@ -1053,20 +1060,10 @@ public class WidgetCustomizationMenu extends Screen {
         if (widget.getCraftAmount() != craftAmount) {
             widget.setCraftAmount(craftAmount);
         }
-        widget.saveConfiguration();
+        widget.flushConfiguration();
         super.onClose();
     }
 
-    private RecipeManager.RecipeNode convertResourceNodeToRecipeNode(ResourcesManager.RecipeNode resourceNode) {
-        if (resourceNode == null) return null;
-        List<RecipeManager.RecipeNode> ingredients = new ArrayList<>();
-        if (resourceNode.ingredients != null) {
-            for (ResourcesManager.RecipeNode child : resourceNode.ingredients) {
-                ingredients.add(convertResourceNodeToRecipeNode(child));
-            }
-        }
-        return new RecipeManager.RecipeNode(resourceNode.name, resourceNode.amount, ingredients);
-    }
 
     // Helper method to draw borders since drawBorder was removed from the rendering API in 1.21.10
     private static void drawBorder(GuiGraphics context, int x, int y, int width, int height, int color) {
@@ -15,11 +15,6 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 @Mixin(AbstractContainerMenu.class)
 public abstract class SlotClickMixin {
 
-    @Inject(method = "clicked", at = @At("HEAD"))
-    private void onClickSlotHead(int slotIndex, int button, ClickType actionType, Player player, CallbackInfo ci) {
-        handleSlotClick(slotIndex, button, actionType, player);
-    }
-
     @Inject(method = "clicked", at = @At("RETURN"))
     private void onClickSlotReturn(int slotIndex, int button, ClickType actionType, Player player, CallbackInfo ci) {
         handleSlotClick(slotIndex, button, actionType, player);
@@ -34,6 +29,6 @@ public abstract class SlotClickMixin {
             return;
         }
         StorageReader storageReader = StorageReader.getInstance();
-        storageReader.saveContainerContents((AbstractContainerMenu)(Object)this, title);
+        storageReader.requestCapture((AbstractContainerMenu)(Object)this, title);
     }
 }
\ No newline at end of file
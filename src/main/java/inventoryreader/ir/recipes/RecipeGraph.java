@@ -0,0 +1,246 @@
+package inventoryreader.ir.recipes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, index-based view of the sanitized recipe map.
+ *
+ * Every item name (outputs and ingredients) is interned to a dense int id. Recipes are
+ * stored as parallel ingredient id / quantity arrays, and a topological order
+ * (ingredients before the items made from them) is computed once at build time.
+ *
+ * On top of that the graph keeps a flattened bill of materials per item: the total raw
+ * (non-craftable) requirement for crafting one unit, as a sparse vector sorted by id.
+ * It is filled bottom-up in a single pass over the topological order, so answering
+ * "what raw materials does N of X take" is a scaled lookup instead of a recursive walk.
+ */
+public final class RecipeGraph {
+    public static final RecipeGraph EMPTY = build(Collections.emptyMap());
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final Map<String, Integer> ids;
+    private final String[] names;
+    private final int[][] ingredientIds;
+    private final int[][] ingredientQty;
+    private final int[] topoOrder;
+    private final int[][] bomIds;
+    private final long[][] bomAmounts;
+
+    private RecipeGraph(Map<String, Integer> ids, String[] names, int[][] ingredientIds, int[][] ingredientQty,
+                        int[] topoOrder, int[][] bomIds, long[][] bomAmounts) {
+        this.ids = ids;
+        this.names = names;
+        this.ingredientIds = ingredientIds;
+        this.ingredientQty = ingredientQty;
+        this.topoOrder = topoOrder;
+        this.bomIds = bomIds;
+        this.bomAmounts = bomAmounts;
+    }
+
+    /**
+     * Builds the graph from an output -> (ingredient -> quantity) map. The map is expected to
+     * be acyclic (RecipeManager sanitizes it first); any edge that would still close a cycle
+     * is ignored rather than looping forever.
+     */
+    public static RecipeGraph build(Map<String, Map<String, Integer>> recipes) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Integer>> e : recipes.entrySet()) {
+            intern(e.getKey(), ids, names);
+            if (e.getValue() == null) continue;
+            for (String ing : e.getValue().keySet()) intern(ing, ids, names);
+        }
+
+        int n = names.size();
+        int[][] ingIds = new int[n][];
+        int[][] ingQty = new int[n][];
+        for (int i = 0; i < n; i++) {
+            ingIds[i] = NO_IDS;
+            ingQty[i] = NO_IDS;
+        }
+        for (Map.Entry<String, Map<String, Integer>> e : recipes.entrySet()) {
+            Map<String, Integer> ing = e.getValue();
+            if (ing == null || ing.isEmpty()) continue;
+            int id = ids.get(e.getKey());
+            int[] a = new int[ing.size()];
+            int[] q = new int[ing.size()];
+            int k = 0;
+            for (Map.Entry<String, Integer> ie : ing.entrySet()) {
+                int qty = ie.getValue() == null ? 0 : ie.getValue();
+                if (qty <= 0) continue;
+                a[k] = ids.get(ie.getKey());
+                q[k] = qty;
+                k++;
+            }
+            ingIds[id] = k == a.length ? a : Arrays.copyOf(a, k);
+            ingQty[id] = k == q.length ? q : Arrays.copyOf(q, k);
+        }
+
+        int[] topo = topologicalOrder(ingIds);
+
+        // Bottom-up BOM fill: every ingredient of an item precedes it in topo order,
+        // so its vector is final by the time the item itself is visited.
+        int[][] bomIds = new int[n][];
+        long[][] bomAmounts = new long[n][];
+        long[] scratch = new long[n];
+        boolean[] touched = new boolean[n];
+        int[] touchedList = new int[n];
+        for (int id : topo) {
+            int[] a = ingIds[id];
+            if (a.length == 0) {
+                bomIds[id] = new int[] { id };
+                bomAmounts[id] = new long[] { 1L };
+                continue;
+            }
+            int touchedCount = 0;
+            int[] q = ingQty[id];
+            for (int j = 0; j < a.length; j++) {
+                int[] subIds = bomIds[a[j]];
+                long[] subAmt = bomAmounts[a[j]];
+                if (subIds == null) continue; // edge dropped as a cycle
+                for (int s = 0; s < subIds.length; s++) {
+                    int raw = subIds[s];
+                    if (!touched[raw]) {
+                        touched[raw] = true;
+                        touchedList[touchedCount++] = raw;
+                    }
+                    scratch[raw] = saturatingAdd(scratch[raw], saturatingMultiply(subAmt[s], q[j]));
+                }
+            }
+            int[] outIds = Arrays.copyOf(touchedList, touchedCount);
+            Arrays.sort(outIds);
+            long[] outAmt = new long[touchedCount];
+            for (int s = 0; s < touchedCount; s++) {
+                int raw = outIds[s];
+                outAmt[s] = scratch[raw];
+                scratch[raw] = 0L;
+                touched[raw] = false;
+            }
+            bomIds[id] = outIds;
+            bomAmounts[id] = outAmt;
+        }
+
+        return new RecipeGraph(Collections.unmodifiableMap(ids), names.toArray(new String[0]),
+                ingIds, ingQty, topo, bomIds, bomAmounts);
+    }
+
+    private static void intern(String name, Map<String, Integer> ids, List<String> names) {
+        if (name == null || ids.containsKey(name)) return;
+        ids.put(name, names.size());
+        names.add(name);
+    }
+
+    // Iterative DFS post-order; edges that point back into the current path are skipped.
+    private static int[] topologicalOrder(int[][] ingIds) {
+        int n = ingIds.length;
+        int[] order = new int[n];
+        int count = 0;
+        byte[] state = new byte[n]; // 0 = new, 1 = on stack, 2 = done
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) continue;
+            int depth = 0;
+            stack[depth] = start;
+            cursor[depth] = 0;
+            state[start] = 1;
+            while (depth >= 0) {
+                int node = stack[depth];
+                int[] a = ingIds[node];
+                if (cursor[depth] < a.length) {
+                    int next = a[cursor[depth]++];
+                    if (state[next] == 0) {
+                        state[next] = 1;
+                        depth++;
+                        stack[depth] = next;
+                        cursor[depth] = 0;
+                    }
+                } else {
+                    state[node] = 2;
+                    order[count++] = node;
+                    depth--;
+                }
+            }
+        }
+        return order;
+    }
+
+    public static long saturatingAdd(long a, long b) {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return r;
+    }
+
+    public static long saturatingMultiply(long a, long b) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        if ((hi == 0 && lo >= 0) || (hi == -1 && lo < 0)) return lo;
+        return (a < 0) == (b < 0) ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /** Returns the id for an item name, or -1 if the item appears in no recipe. */
+    public int idOf(String name) {
+        Integer id = name == null ? null : ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public boolean isCraftable(int id) {
+        return ingredientIds[id].length > 0;
+    }
+
+    // The arrays below are shared with the graph; callers must not modify them.
+
+    public int[] ingredientIds(int id) {
+        return ingredientIds[id];
+    }
+
+    public int[] ingredientQuantities(int id) {
+        return ingredientQty[id];
+    }
+
+    /** All item ids ordered so that every ingredient comes before the items that use it. */
+    public int[] topologicalOrder() {
+        return topoOrder;
+    }
+
+    /** Raw item ids in the flattened bill of materials of one unit of {@code id}, sorted ascending. */
+    public int[] bomIds(int id) {
+        return bomIds[id];
+    }
+
+    /** Raw amounts matching {@link #bomIds(int)}; saturate at Long.MAX_VALUE instead of overflowing. */
+    public long[] bomAmounts(int id) {
+        return bomAmounts[id];
+    }
+
+    /** Flattened bill of materials for {@code amount} of {@code name}, keyed by raw item name. */
+    public Map<String, Long> flattenedBom(String name, long amount) {
+        int id = idOf(name);
+        Map<String, Long> out = new LinkedHashMap<>();
+        if (id < 0) {
+            out.put(name, amount);
+            return out;
+        }
+        int[] raw = bomIds[id];
+        long[] amt = bomAmounts[id];
+        for (int i = 0; i < raw.length; i++) {
+            out.put(names[raw[i]], saturatingMultiply(amt[i], amount));
+        }
+        return out;
+    }
+}
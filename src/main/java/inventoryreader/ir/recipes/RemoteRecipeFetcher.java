@@ -10,6 +10,7 @@ import io.github.moulberry.repo.data.NEUIngredient;
 import io.github.moulberry.repo.data.NEUItem;
 import io.github.moulberry.repo.data.NEURecipe;
 import inventoryreader.ir.FilePathManager;
+import inventoryreader.ir.IrRuntime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,16 +32,18 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 public final class RemoteRecipeFetcher {
     private static final Logger LOGGER = LoggerFactory.getLogger("IR-RemoteRecipeFetcher");
     private static final Gson GSON = new Gson();
-    private static final HttpClient HTTP = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(6)).build();
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(6))
+        .executor(IrRuntime.getInstance().io())
+        .build();
     private RemoteRecipeFetcher() {}
 
     public static void fetchAsync() {
-        CompletableFuture.runAsync(RemoteRecipeFetcher::runFetchSafe);
+        IrRuntime.getInstance().runIo("recipe_fetch", RemoteRecipeFetcher::runFetchSafe);
     }
 
     private static void runFetchSafe() {
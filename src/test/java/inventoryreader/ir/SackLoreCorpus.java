@@ -0,0 +1,90 @@
+package inventoryreader.ir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The lore lines in {@code sack_lore_corpus.txt} and the split-based parsing SackReader used
+ * before {@link SackLoreParser}, shared by SackLoreParserTest and the JMH benchmark.
+ */
+final class SackLoreCorpus {
+    private static final Set<String> GEMSTONE_RARITIES = new HashSet<>(Arrays.asList("Rough:", "Flawed:", "Fine:", "Flawless:", "Perfect:"));
+    private static final Pattern COLOUR_CODE = Pattern.compile("§.?");
+    private static final Pattern CAPACITY = Pattern.compile("^\\s*([0-9,]*)(?:\\.([0-9]*))?([kKmM]?)");
+
+    private SackLoreCorpus() {}
+
+    /** Every corpus line, in file order; lines starting with '#' are comments. */
+    static List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = SackLoreCorpus.class.getResourceAsStream("/sack_lore_corpus.txt")) {
+            if (in == null) throw new IllegalStateException("sack_lore_corpus.txt missing");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) lines.add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+
+    /** {@code line} without colour codes, as Component.getString() hands it to SackReader. */
+    static String strip(String line) {
+        return COLOUR_CODE.matcher(line).replaceAll("");
+    }
+
+    /** The old SackReader.readSackData line handling; null where it skipped the line. */
+    static Integer legacyStoredAmount(String l) {
+        if (!l.contains("Stored:")) return null;
+        String[] parts = l.split("/");
+        String[] itemCountStr = parts[0].split("Stored: ");
+        String itemCountCleaned = itemCountStr[1].trim().replace(",", "");
+        return Integer.parseInt(itemCountCleaned);
+    }
+
+    /** The old SackReader.readGemstoneSackData line handling, as "Tier=count"; null where it skipped the line. */
+    static String legacyGemstoneEntry(String l) {
+        String[] parts = l.split(" ");
+        if (parts.length < 4) return null;
+        String rarity = parts[1];
+        if (!GEMSTONE_RARITIES.contains(rarity)) return null;
+        int itemCount = Integer.parseInt(parts[2].trim().replace(",", ""));
+        return rarity.substring(0, rarity.length() - 1) + "=" + itemCount;
+    }
+
+    /**
+     * Reference for capacity, which the old code never read: the number after the first
+     * slash following {@code "Stored: "}, scaled by a k/M suffix and truncated. -1 if none.
+     */
+    static long referenceCapacity(String l) {
+        int at = l.indexOf("Stored: ");
+        if (at < 0) return -1;
+        int slash = l.indexOf('/', at);
+        if (slash < 0) return -1;
+        Matcher m = CAPACITY.matcher(l.substring(slash + 1));
+        if (!m.find()) return -1;
+        String whole = m.group(1).replace(",", "");
+        String fraction = m.group(2) == null ? "" : m.group(2);
+        if (whole.isEmpty() && fraction.isEmpty()) return -1;
+        BigDecimal value = new BigDecimal((whole.isEmpty() ? "0" : whole) + (fraction.isEmpty() ? "" : "." + fraction));
+        if (value.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE).add(BigDecimal.ONE)) >= 0) return -1;
+        String suffix = m.group(3);
+        long multiplier = suffix.equalsIgnoreCase("k") ? 1_000 : suffix.equalsIgnoreCase("m") ? 1_000_000 : 1;
+        return value.multiply(BigDecimal.valueOf(multiplier)).setScale(0, RoundingMode.DOWN).longValueExact();
+    }
+}
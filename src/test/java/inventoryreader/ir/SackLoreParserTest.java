@@ -0,0 +1,73 @@
+package inventoryreader.ir;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks {@link SackLoreParser} against the split-based parsing SackReader used before it,
+ * over the lore lines in {@code sack_lore_corpus.txt}. The old code saw lines without colour
+ * codes, so each line is compared with the old result for its stripped form: where the old
+ * code returned a value the parser must return the same one, where it threw, -1.
+ */
+class SackLoreParserTest {
+    @Test
+    void storedAmountMatchesSplitParsing() {
+        for (String line : corpus()) {
+            Integer expected;
+            try {
+                expected = SackLoreCorpus.legacyStoredAmount(SackLoreCorpus.strip(line));
+            } catch (RuntimeException e) {
+                expected = -1;
+            }
+            assertEquals(expected == null ? -1 : expected, SackLoreParser.storedAmount(line), line);
+        }
+    }
+
+    @Test
+    void gemstoneEntryMatchesSplitParsing() {
+        for (String line : corpus()) {
+            String expected;
+            try {
+                expected = SackLoreCorpus.legacyGemstoneEntry(SackLoreCorpus.strip(line));
+            } catch (RuntimeException e) {
+                expected = null;
+            }
+            long entry = SackLoreParser.gemstoneEntry(line);
+            String actual = entry < 0 ? null
+                : SackLoreParser.GEMSTONE_TIERS[SackLoreParser.tierOf(entry)] + "=" + SackLoreParser.countOf(entry);
+            assertEquals(expected, actual, line);
+        }
+    }
+
+    @Test
+    void capacityMatchesReference() {
+        for (String line : corpus()) {
+            assertEquals(SackLoreCorpus.referenceCapacity(SackLoreCorpus.strip(line)), SackLoreParser.capacity(line), line);
+        }
+    }
+
+    @Test
+    void capacityExpandsSuffixes() {
+        assertEquals(60_000, SackLoreParser.capacity("§7Stored: §e1,234§7/60k"));
+        assertEquals(2_200, SackLoreParser.capacity("Stored: 2,240/2.2k"));
+        assertEquals(2_240, SackLoreParser.capacity("Stored: 2,240/2,240"));
+        assertEquals(1_100_000, SackLoreParser.capacity("Stored: 0/1.1M"));
+    }
+
+    @Test
+    void plainLinesAreNotCopied() {
+        String line = "Stored: 1,234/60k";
+        assertSame(line, SackLoreParser.plain(line));
+    }
+
+    private static List<String> corpus() {
+        List<String> lines = SackLoreCorpus.lines();
+        assertFalse(lines.isEmpty());
+        return lines;
+    }
+}